@@ -0,0 +1,170 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a large version 1 database and checks that the rows survive and that the queries
+ * sorting on the time columns read an index instead of scanning and sorting the table
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlantDbHelperMigrationTest {
+
+    private static final String DATABASE_NAME = "migration_test.db";
+    private static final int PLANT_COUNT = 20000;
+    private static final int PAGE_SIZE = 100;
+
+    // The plant the single-plant widget shows, as queried by PlantWateringService
+    private static final String SQL_BY_LAST_WATERED_TIME = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " ORDER BY " + PlantEntry.COLUMN_LAST_WATERED_TIME;
+    // The first and following pages of the garden, as queried by the provider's page URI
+    private static final String SQL_FIRST_PAGE = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " ORDER BY " + PlantSql.PAGE_SORT_ORDER + " LIMIT " + PAGE_SIZE;
+    private static final String SQL_NEXT_PAGE = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " WHERE " + PlantSql.PAGE_SELECTION +
+            " ORDER BY " + PlantSql.PAGE_SORT_ORDER + " LIMIT " + PAGE_SIZE;
+    private static final String[] NEXT_PAGE_ARGS = {"5000", "5000", "5000"};
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion1KeepsRowsAndIndexesTimeColumns() {
+        createVersion1Database();
+
+        SQLiteDatabase db = new PlantDbHelper(mContext, DATABASE_NAME, false).getWritableDatabase();
+        try {
+            assertEquals(PlantSql.SCHEMA_VERSION, db.getVersion());
+            assertEquals(PLANT_COUNT, countPlants(db));
+            assertPlantKept(db, 1);
+            assertPlantKept(db, PLANT_COUNT);
+
+            assertUsesIndex(db, SQL_BY_LAST_WATERED_TIME, null, PlantSql.INDEX_LAST_WATERED_TIME);
+            assertUsesIndex(db, SQL_FIRST_PAGE, null, PlantSql.INDEX_CREATION_TIME);
+            assertUsesIndex(db, SQL_NEXT_PAGE, NEXT_PAGE_ARGS, PlantSql.INDEX_CREATION_TIME);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Writes a version 1 database, without any index, as shipped before the migrations existed
+     */
+    private void createVersion1Database() {
+        File file = mContext.getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL(PlantSql.CREATE_PLANTS_TABLE);
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + PlantEntry.TABLE_NAME +
+                    " (" + PlantEntry.COLUMN_PLANT_TYPE + ", " + PlantEntry.COLUMN_CREATION_TIME +
+                    ", " + PlantEntry.COLUMN_LAST_WATERED_TIME + ") VALUES (?, ?, ?)");
+            db.beginTransaction();
+            try {
+                for (int i = 1; i <= PLANT_COUNT; i++) {
+                    insert.bindLong(1, i % 3);
+                    insert.bindLong(2, i);
+                    // Watered in a different order than planted
+                    insert.bindLong(3, (i * 7919L) % PLANT_COUNT);
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            db.setVersion(1);
+
+            // Without the indexes these queries have to sort the whole table
+            assertTrue(explain(db, SQL_BY_LAST_WATERED_TIME, null).contains("TEMP B-TREE"));
+            assertTrue(explain(db, SQL_NEXT_PAGE, NEXT_PAGE_ARGS).contains("TEMP B-TREE"));
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long countPlants(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, PlantEntry.TABLE_NAME);
+    }
+
+    private static void assertPlantKept(SQLiteDatabase db, long plantId) {
+        Cursor cursor = db.query(PlantEntry.TABLE_NAME, null, PlantEntry._ID + "=?",
+                new String[]{String.valueOf(plantId)}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(plantId % 3, cursor.getInt(cursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE)));
+            assertEquals(plantId, cursor.getLong(cursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME)));
+            assertEquals((plantId * 7919L) % PLANT_COUNT,
+                    cursor.getLong(cursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertUsesIndex(SQLiteDatabase db, String sql, String[] args, String index) {
+        String plan = explain(db, sql, args);
+        assertTrue(sql + " doesn't use " + index + ": " + plan, plan.contains(index));
+        assertFalse(sql + " sorts the table: " + plan, plan.contains("TEMP B-TREE"));
+    }
+
+    /**
+     * @return The details of every step of the query plan, one per line
+     */
+    private static String explain(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.pm.ProviderInfo;
+import android.database.DatabaseErrorHandler;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.mock.MockContentResolver;
+
+import java.io.File;
+
+/**
+ * Context whose content resolver only reaches a PlantContentProvider of its own, which stores
+ * the garden in prefixed databases, so tests never touch the app's garden
+ */
+public class TestPlantContext extends ContextWrapper {
+
+    private final String mDatabasePrefix;
+    private final MockContentResolver mResolver;
+
+    /**
+     * @param base           The context of the app under test
+     * @param databasePrefix The prefix of this context's database file names
+     */
+    public TestPlantContext(Context base, String databasePrefix) {
+        super(base);
+        mDatabasePrefix = databasePrefix;
+        mResolver = new MockContentResolver(this);
+    }
+
+    /**
+     * Creates the provider on this context's databases and makes it reachable through
+     * {@link #getContentResolver()}
+     */
+    public void attachProvider() {
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.authority = PlantContract.AUTHORITY;
+        PlantContentProvider provider = new PlantContentProvider();
+        provider.attachInfo(this, providerInfo);
+        mResolver.addProvider(PlantContract.AUTHORITY, provider);
+    }
+
+    /**
+     * Deletes this context's databases
+     */
+    public void deleteDatabases() {
+        for (String name : databaseList()) {
+            deleteDatabase(name);
+        }
+    }
+
+    @Override
+    public ContentResolver getContentResolver() {
+        return mResolver;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public File getDatabasePath(String name) {
+        return super.getDatabasePath(mDatabasePrefix + name);
+    }
+
+    @Override
+    public SQLiteDatabase openOrCreateDatabase(String name, int mode,
+                                               SQLiteDatabase.CursorFactory factory) {
+        return super.openOrCreateDatabase(mDatabasePrefix + name, mode, factory);
+    }
+
+    @Override
+    public SQLiteDatabase openOrCreateDatabase(String name, int mode,
+                                               SQLiteDatabase.CursorFactory factory,
+                                               DatabaseErrorHandler errorHandler) {
+        return super.openOrCreateDatabase(mDatabasePrefix + name, mode, factory, errorHandler);
+    }
+
+    @Override
+    public boolean deleteDatabase(String name) {
+        return super.deleteDatabase(mDatabasePrefix + name);
+    }
+
+    @Override
+    public String[] databaseList() {
+        // Only this context's databases, without their prefix
+        String[] names = super.databaseList();
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(mDatabasePrefix)) {
+                names[count++] = name.substring(mDatabasePrefix.length());
+            }
+        }
+        String[] databases = new String[count];
+        System.arraycopy(names, 0, databases, 0, count);
+        return databases;
+    }
+}
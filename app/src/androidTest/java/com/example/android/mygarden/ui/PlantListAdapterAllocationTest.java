@@ -0,0 +1,210 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.provider.TestPlantContext;
+import com.example.android.mygarden.utils.PlantUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls a 10k-plant garden in the garden screen's grid and counts the objects allocated by
+ * the main thread while binding plants. Once every view holder exists and the plant images are
+ * decoded, binding must not allocate at all.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlantListAdapterAllocationTest {
+
+    private static final String DATABASE_PREFIX = "allocation_test.";
+    private static final int PLANT_COUNT = 10000;
+    // Like the garden screen
+    private static final int SPAN_COUNT = 4;
+    // Small enough that a single row at a time scrolls in, like a fling's frames
+    private static final int SCROLL_STEP_PIXELS = 40;
+    private static final int SCROLL_STEPS = 500;
+    private static final long IMAGE_TIMEOUT_MILLISECONDS = 10000;
+
+    private Instrumentation mInstrumentation;
+    private TestPlantContext mPlantContext;
+    private PlantSnapshot mPlants;
+    private RecyclerView mRecyclerView;
+    private CountingAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mPlantContext = new TestPlantContext(InstrumentationRegistry.getTargetContext(), DATABASE_PREFIX);
+        mPlantContext.deleteDatabases();
+        mPlantContext.attachProvider();
+
+        // Plants of every age and watering state, so all the images are shown
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        ContentValues[] plants = new ContentValues[PLANT_COUNT];
+        for (int i = 0; i < PLANT_COUNT; i++) {
+            ContentValues values = new ContentValues();
+            values.put(PlantEntry.COLUMN_PLANT_TYPE, random.nextInt(2));
+            values.put(PlantEntry.COLUMN_CREATION_TIME,
+                    now - (long) (random.nextDouble() * PlantUtils.FULLY_GROWN_AGE * 2));
+            values.put(PlantEntry.COLUMN_LAST_WATERED_TIME,
+                    now - (long) (random.nextDouble() * PlantUtils.MAX_AGE_WITHOUT_WATER * 2));
+            plants[i] = values;
+        }
+        mPlantContext.getContentResolver().bulkInsert(PlantEntry.CONTENT_URI, plants);
+        mPlants = PlantSnapshot.load(mPlantContext.getContentResolver());
+    }
+
+    @After
+    public void tearDown() {
+        mPlantContext.deleteDatabases();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void scrollingBindsWithoutAllocating() {
+        assertEquals(PLANT_COUNT, mPlants.size);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                mRecyclerView = new RecyclerView(context);
+                mRecyclerView.setLayoutManager(new GridLayoutManager(context, SPAN_COUNT));
+                mAdapter = new CountingAdapter(context);
+                mRecyclerView.setAdapter(mAdapter);
+                mAdapter.swapPlants(mPlants);
+
+                DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+                mRecyclerView.measure(
+                        View.MeasureSpec.makeMeasureSpec(metrics.widthPixels, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(metrics.heightPixels, View.MeasureSpec.EXACTLY));
+                mRecyclerView.layout(0, 0, metrics.widthPixels, metrics.heightPixels);
+            }
+        });
+
+        // Warms up: creates the view holders, decodes the atlases and lets every holder show
+        // images of both types
+        scroll(SCROLL_STEPS);
+        scroll(-SCROLL_STEPS);
+        waitForImages();
+
+        Debug.startAllocCounting();
+        try {
+            mAdapter.mCounting = true;
+            scroll(SCROLL_STEPS);
+            mAdapter.mCounting = false;
+        } finally {
+            Debug.stopAllocCounting();
+        }
+
+        assertTrue("No plant was bound", mAdapter.mBindCount > 0);
+        assertEquals(mAdapter.mBindAllocations + " objects allocated by " + mAdapter.mBindCount
+                + " binds", 0, mAdapter.mBindAllocations);
+    }
+
+    /**
+     * Scrolls the grid one step per frame, then waits for the main thread to be idle
+     *
+     * @param steps The number of steps, negative to scroll up
+     */
+    private void scroll(int steps) {
+        final int dy = steps > 0 ? SCROLL_STEP_PIXELS : -SCROLL_STEP_PIXELS;
+        for (int i = 0; i < Math.abs(steps); i++) {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mRecyclerView.scrollBy(0, dy);
+                }
+            });
+        }
+        mInstrumentation.waitForIdleSync();
+    }
+
+    /**
+     * Waits until every plant on screen shows its image, so the atlases are decoded and cached
+     */
+    private void waitForImages() {
+        final boolean[] shown = new boolean[1];
+        long timeout = SystemClock.uptimeMillis() + IMAGE_TIMEOUT_MILLISECONDS;
+        while (SystemClock.uptimeMillis() < timeout) {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    shown[0] = true;
+                    for (int i = 0; i < mRecyclerView.getChildCount(); i++) {
+                        ImageView image = (ImageView) mRecyclerView.getChildAt(i)
+                                .findViewById(R.id.plant_list_item_image);
+                        if (image.getDrawable() == null) shown[0] = false;
+                    }
+                }
+            });
+            if (shown[0]) return;
+            SystemClock.sleep(50);
+        }
+        throw new AssertionError("The plant images weren't shown");
+    }
+
+    /**
+     * Counts the objects the main thread allocates in onBindViewHolder while counting
+     */
+    private static class CountingAdapter extends PlantListAdapter {
+
+        volatile boolean mCounting;
+        int mBindCount;
+        int mBindAllocations;
+
+        CountingAdapter(Context context) {
+            super(context);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onBindViewHolder(PlantViewHolder holder, int position) {
+            if (!mCounting) {
+                super.onBindViewHolder(holder, position);
+                return;
+            }
+            int allocated = Debug.getThreadAllocCount();
+            super.onBindViewHolder(holder, position);
+            mBindAllocations += Debug.getThreadAllocCount() - allocated;
+            mBindCount++;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.mygarden.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times the plant image lookup against the lookup by drawable name it replaced, both on the
+ * app's real resources, and logs the time per lookup under the PlantImageLookup tag:
+ * <pre>
+ * ./gradlew connectedDebugAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.class=com.example.android.mygarden.utils.PlantImageLookupBenchmarkTest
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlantImageLookupBenchmarkTest {
+
+    private static final String LOG_TAG = "PlantImageLookup";
+    private static final int SAMPLE_COUNT = 1024;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+    private static final PlantUtils.PlantStatus[] STATUSES = PlantUtils.PlantStatus.values();
+    private static final PlantUtils.PlantSize[] SIZES = PlantUtils.PlantSize.values();
+
+    private Context mContext;
+    private int[] mTypes;
+    private int[] mStatuses;
+    private int[] mSizes;
+    // Keeps the results alive, so the lookups can't be optimized away
+    private int mSink;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+
+        TypedArray plantTypes = mContext.getResources().obtainTypedArray(R.array.plant_types);
+        int typeCount = plantTypes.length();
+        plantTypes.recycle();
+
+        Random random = new Random(42);
+        mTypes = new int[SAMPLE_COUNT];
+        mStatuses = new int[SAMPLE_COUNT];
+        mSizes = new int[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            mTypes[i] = random.nextInt(typeCount);
+            mStatuses[i] = random.nextInt(STATUSES.length);
+            mSizes[i] = random.nextInt(SIZES.length);
+        }
+    }
+
+    @Test
+    public void compareImageLookups() {
+        // Both lookups must find the same images for the comparison to mean anything
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            assertEquals(getPlantImgResByName(mContext, mTypes[i], STATUSES[mStatuses[i]], SIZES[mSizes[i]]),
+                    PlantUtils.getPlantImgRes(mContext, mTypes[i], mStatuses[i], mSizes[i]));
+        }
+
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            lookUpByName();
+            lookUpByTable();
+        }
+        long byNameNanos = Long.MAX_VALUE;
+        long byTableNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            byNameNanos = Math.min(byNameNanos, lookUpByName());
+            byTableNanos = Math.min(byTableNanos, lookUpByTable());
+        }
+
+        Log.i(LOG_TAG, "by name: " + byNameNanos / SAMPLE_COUNT + " ns per lookup");
+        Log.i(LOG_TAG, "by table: " + byTableNanos / SAMPLE_COUNT + " ns per lookup");
+        Log.d(LOG_TAG, "sink: " + mSink);
+    }
+
+    /**
+     * @return The time (in nanoseconds) the lookup by name took for every sample
+     */
+    private long lookUpByName() {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            sink += getPlantImgResByName(mContext, mTypes[i], STATUSES[mStatuses[i]], SIZES[mSizes[i]]);
+        }
+        long elapsed = System.nanoTime() - start;
+        mSink += sink;
+        return elapsed;
+    }
+
+    /**
+     * @return The time (in nanoseconds) the lookup by table took for every sample
+     */
+    private long lookUpByTable() {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            sink += PlantUtils.getPlantImgRes(mContext, mTypes[i], mStatuses[i], mSizes[i]);
+        }
+        long elapsed = System.nanoTime() - start;
+        mSink += sink;
+        return elapsed;
+    }
+
+    /**
+     * The image lookup as PlantUtils did it before its resource tables: builds the drawable's
+     * name from the plant type and resolves it by name on every call
+     */
+    private static int getPlantImgResByName(Context context, int type, PlantUtils.PlantStatus status,
+                                            PlantUtils.PlantSize size) {
+
+        TypedArray plantTypes = context.getResources().obtainTypedArray(R.array.plant_types);
+        String resName = plantTypes.getString(type);
+
+        switch (status) {
+            case DYING:
+                resName += "_danger";
+                break;
+            case DEAD:
+                resName += "_dead";
+                break;
+        }
+
+        switch (size) {
+            case TINY:
+                resName += "_1";
+                break;
+            case JUVENILE:
+                resName += "_2";
+                break;
+            case FULLY_GROWN:
+                resName += "_3";
+                break;
+        }
+
+        plantTypes.recycle();
+        return context.getResources().getIdentifier(resName, "drawable", context.getPackageName());
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.android.mygarden.simulator;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantContract.PlantSummary;
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.utils.PlantLifecycle;
+import com.example.android.mygarden.utils.PlantSpecies;
+import com.example.android.mygarden.utils.PlantUtils;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Load generator that fills the garden through PlantContentProvider and then runs it on a
+ * virtual clock for days of waterings, growth and deaths, timing every provider operation and
+ * lifecycle evaluation along the way. Each step also does the work of the widget refresh the
+ * waterings trigger.
+ * <p>
+ * The simulator only needs a ContentResolver backed by the provider and a context for the plant
+ * images, so it runs headless. Every timestamp comes from the virtual clock, which is never tied
+ * to System.currentTimeMillis(). Only available in debug builds, GardenSimulatorTest runs it.
+ */
+public class GardenSimulator {
+
+    private static final long HOUR_MILLISECONDS = 1000 * 60 * 60;
+
+    /**
+     * Simulation parameters
+     */
+    public static class Config {
+        // Number of plants planted before the clock starts
+        public int plantCount = 100000;
+        // Plants inserted per bulkInsert call while populating
+        public int insertBatchSize = 1000;
+        // Simulated duration, and how far the clock advances per step
+        public int days = 7;
+        public long stepMillis = HOUR_MILLISECONDS;
+        // Fraction of the garden the gardener tries to water at each step
+        public double wateringRatio = 0.1;
+        // Plants watered one by one (like the detail screen and widget button) at each step
+        public int singleWateringsPerStep = 50;
+        // Plants read per page query at each step, like the garden screen does
+        public int pageSize = 100;
+        // Whether each step refreshes the widgets, as the app does after watering
+        public boolean refreshWidgets = true;
+        // Virtual time the garden is planted at
+        public long startTime = 0;
+        public long seed = 42;
+    }
+
+    /**
+     * Count, total and worst latency of one kind of operation
+     */
+    public static class Stats {
+        public final String name;
+        public long count;
+        public long items;
+        public long totalNanos;
+        public long maxNanos;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(long startNanos, long items) {
+            long elapsed = System.nanoTime() - startNanos;
+            this.count++;
+            this.items += items;
+            this.totalNanos += elapsed;
+            if (elapsed > maxNanos) maxNanos = elapsed;
+        }
+
+        /**
+         * @return Items (rows or plants) processed per second of operation time
+         */
+        public double getItemsPerSecond() {
+            return totalNanos == 0 ? 0 : items * 1e9 / totalNanos;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-16s ops=%-8d items=%-10d items/s=%-12.0f mean=%.3fms max=%.3fms",
+                    name, count, items, getItemsPerSecond(), getMeanMillis(), maxNanos / 1e6);
+        }
+    }
+
+    /**
+     * Results of a simulation
+     */
+    public static class Report {
+        public final Stats inserts = new Stats("insert");
+        public final Stats bulkWaterings = new Stats("water (bulk)");
+        public final Stats singleWaterings = new Stats("water (single)");
+        public final Stats pageQueries = new Stats("query (page)");
+        public final Stats summaryQueries = new Stats("query (summary)");
+        public final Stats snapshots = new Stats("snapshot");
+        public final Stats evaluations = new Stats("evaluate");
+        public final Stats widgetRefreshes = new Stats("widget refresh");
+        // Garden state at the end of the simulation
+        public long alive;
+        public long dying;
+        public long dead;
+        public long fullyGrown;
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Stats stats : new Stats[]{inserts, bulkWaterings, singleWaterings, pageQueries,
+                    summaryQueries, snapshots, evaluations, widgetRefreshes}) {
+                builder.append(stats).append('\n');
+            }
+            return builder.append(String.format(Locale.US,
+                    "final garden: alive=%d dying=%d dead=%d fullyGrown=%d",
+                    alive, dying, dead, fullyGrown)).toString();
+        }
+    }
+
+    private final Context mContext;
+    private final ContentResolver mResolver;
+    private final PlantSpecies mSpecies;
+    private final Config mConfig;
+    private final Random mRandom;
+    private long mNow;
+
+    /**
+     * @param context  Context whose resources hold the plant images
+     * @param resolver Resolver backed by PlantContentProvider, on an empty database
+     * @param species  The thresholds the provider was created with
+     * @param config   The simulation parameters
+     */
+    public GardenSimulator(Context context, ContentResolver resolver, PlantSpecies species,
+                           Config config) {
+        mContext = context;
+        mResolver = resolver;
+        mSpecies = species;
+        mConfig = config;
+        mRandom = new Random(config.seed);
+    }
+
+    /**
+     * Populates the garden then runs the clock until the end of the simulation
+     *
+     * @return The timings and final state of the garden
+     */
+    public Report run() {
+        Report report = new Report();
+        mNow = mConfig.startTime;
+        populate(report);
+
+        long endTime = mConfig.startTime + mConfig.days * 24 * HOUR_MILLISECONDS;
+        PlantSnapshot snapshot = loadSnapshot(report);
+        while (mNow < endTime) {
+            mNow += mConfig.stepMillis;
+            waterRandomPlants(snapshot, report);
+            if (mConfig.refreshWidgets) refreshWidgets(report);
+            queryPage(snapshot, report);
+            querySummary(report);
+            snapshot = loadSnapshot(report);
+            evaluate(snapshot, report);
+        }
+
+        readFinalState(report);
+        return report;
+    }
+
+    private void populate(Report report) {
+        int typeCount = Math.max(1, mSpecies.getTypeCount());
+        int remaining = mConfig.plantCount;
+        while (remaining > 0) {
+            int batchSize = Math.min(remaining, mConfig.insertBatchSize);
+            ContentValues[] batch = new ContentValues[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                ContentValues values = new ContentValues();
+                values.put(PlantEntry.COLUMN_PLANT_TYPE, mRandom.nextInt(typeCount));
+                values.put(PlantEntry.COLUMN_CREATION_TIME, mNow);
+                values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, mNow);
+                batch[i] = values;
+            }
+
+            long start = System.nanoTime();
+            int inserted = mResolver.bulkInsert(PlantEntry.CONTENT_URI, batch);
+            report.inserts.record(start, inserted);
+            remaining -= batchSize;
+        }
+    }
+
+    private void waterRandomPlants(PlantSnapshot snapshot, Report report) {
+        if (snapshot.size == 0) return;
+
+        // Bulk watering of a random part of the garden, eligible plants only
+        long[] plantIds = new long[(int) (snapshot.size * mConfig.wateringRatio)];
+        for (int i = 0; i < plantIds.length; i++) {
+            plantIds[i] = snapshot.ids[mRandom.nextInt(snapshot.size)];
+        }
+        Bundle extras = new Bundle();
+        extras.putLongArray(PlantContract.EXTRA_PLANT_IDS, plantIds);
+        extras.putLong(PlantContract.EXTRA_WATERED_AT, mNow);
+        long start = System.nanoTime();
+        Bundle result = mResolver.call(PlantContract.BASE_CONTENT_URI,
+                PlantContract.METHOD_WATER_PLANTS, null, extras);
+        report.bulkWaterings.record(start, getRowsUpdated(result));
+
+        // Single waterings, as from the detail screen or the widget button
+        for (int i = 0; i < mConfig.singleWateringsPerStep; i++) {
+            extras = new Bundle();
+            extras.putLong(PlantContract.EXTRA_PLANT_ID, snapshot.ids[mRandom.nextInt(snapshot.size)]);
+            extras.putLong(PlantContract.EXTRA_WATERED_AT, mNow);
+            start = System.nanoTime();
+            result = mResolver.call(PlantContract.BASE_CONTENT_URI,
+                    PlantContract.METHOD_WATER_PLANT, null, extras);
+            report.singleWaterings.record(start, getRowsUpdated(result));
+        }
+    }
+
+    /**
+     * Does the work of a widget refresh: finds the plant that needs water the most for the
+     * single plant widget, like PlantWateringService, then the image of every plant for the
+     * garden grid widget, like GridWidgetService. Only the RemoteViews aren't built.
+     */
+    private void refreshWidgets(Report report) {
+        long start = System.nanoTime();
+        Cursor cursor = mResolver.query(PlantEntry.CONTENT_URI, null, null, null,
+                PlantEntry.COLUMN_LAST_WATERED_TIME);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    long wateredAt = cursor.getLong(cursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME));
+                    long createdAt = cursor.getLong(cursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME));
+                    int plantType = cursor.getInt(cursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE));
+                    PlantLifecycle.canWater(mSpecies, plantType, mNow - wateredAt);
+                    PlantUtils.getPlantImageRes(mContext, mNow - createdAt, mNow - wateredAt, plantType);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        PlantSnapshot snapshot = PlantSnapshot.load(mResolver);
+        PlantLifecycle.Evaluation evaluation = PlantLifecycle.evaluate(mSpecies, snapshot.types,
+                snapshot.createdAt, snapshot.wateredAt, snapshot.size, mNow);
+        for (int i = 0; i < snapshot.size; i++) {
+            PlantUtils.getPlantImgRes(mContext, snapshot.types[i], evaluation.status[i],
+                    evaluation.size[i]);
+        }
+        report.widgetRefreshes.record(start, snapshot.size);
+    }
+
+    private void queryPage(PlantSnapshot snapshot, Report report) {
+        if (snapshot.size == 0) return;
+
+        // A page starting at a random point of the garden, like a user scrolling through it
+        int after = mRandom.nextInt(snapshot.size);
+        long start = System.nanoTime();
+        Cursor cursor = mResolver.query(
+                PlantEntry.buildPageUri(snapshot.createdAt[after], snapshot.ids[after], mConfig.pageSize),
+                null, null, null, null);
+        int count = 0;
+        if (cursor != null) {
+            try {
+                count = cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+        }
+        report.pageQueries.record(start, count);
+    }
+
+    private void querySummary(Report report) {
+        long start = System.nanoTime();
+        Cursor cursor = mResolver.query(PlantSummary.buildSummaryUri(mNow), null, null, null, null);
+        if (cursor != null) {
+            try {
+                cursor.moveToFirst();
+            } finally {
+                cursor.close();
+            }
+        }
+        report.summaryQueries.record(start, 1);
+    }
+
+    private PlantSnapshot loadSnapshot(Report report) {
+        long start = System.nanoTime();
+        PlantSnapshot snapshot = PlantSnapshot.load(mResolver);
+        report.snapshots.record(start, snapshot.size);
+        return snapshot;
+    }
+
+    private void evaluate(PlantSnapshot snapshot, Report report) {
+        long start = System.nanoTime();
+        PlantLifecycle.evaluate(mSpecies, snapshot.types, snapshot.createdAt, snapshot.wateredAt,
+                snapshot.size, mNow);
+        report.evaluations.record(start, snapshot.size);
+    }
+
+    private void readFinalState(Report report) {
+        Cursor cursor = mResolver.query(PlantSummary.buildSummaryUri(mNow), null, null, null, null);
+        if (cursor == null) return;
+        try {
+            if (!cursor.moveToFirst()) return;
+            report.alive = cursor.getLong(cursor.getColumnIndex(PlantSummary.COLUMN_ALIVE));
+            report.dying = cursor.getLong(cursor.getColumnIndex(PlantSummary.COLUMN_DYING));
+            report.dead = cursor.getLong(cursor.getColumnIndex(PlantSummary.COLUMN_DEAD));
+            report.fullyGrown = cursor.getLong(cursor.getColumnIndex(PlantSummary.COLUMN_FULLY_GROWN));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getRowsUpdated(Bundle result) {
+        return result == null ? 0 : result.getInt(PlantContract.EXTRA_ROWS_UPDATED);
+    }
+}
@@ -13,24 +13,38 @@ import android.widget.RemoteViews;
 
 import com.example.android.mygarden.provider.PlantContract;
 import com.example.android.mygarden.service.GridWidgetService;
+import com.example.android.mygarden.service.PlantTransitionScheduler;
 import com.example.android.mygarden.service.PlantWateringService;
 import com.example.android.mygarden.ui.MainActivity;
 import com.example.android.mygarden.ui.PlantDetailActivity;
 
+import java.util.Arrays;
+
 /**
  * Implementation of App Widget functionality.
  */
 public class PlantWidgetProvider extends AppWidgetProvider {
 
+    /**
+     * Broadcast by the alarm of {@link PlantTransitionScheduler} when a plant changes status or size
+     */
+    public static final String ACTION_REFRESH_ON_TRANSITION = "com.example.android.mygarden.action.refresh_on_transition";
+
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
     static void updateAppWidget(Context context, AppWidgetManager appWidgetManager,
                                 int imgRes, long plantId, boolean showWater, int widgetID) {
 
         Bundle options = appWidgetManager.getAppWidgetOptions(widgetID);
         int width = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
-        RemoteViews views;
+        int bucket = width < 300
+                ? WidgetRenderCache.BUCKET_SINGLE_PLANT
+                : WidgetRenderCache.BUCKET_GARDEN_GRID;
+
+        // Skips the update if the widget already displays this
+        if (!WidgetRenderCache.shouldUpdate(widgetID, bucket, imgRes, plantId, showWater)) return;
 
-        if (width < 300) {
+        RemoteViews views;
+        if (bucket == WidgetRenderCache.BUCKET_SINGLE_PLANT) {
             views = getSinglePlantRemoteView(context, widgetID, imgRes, plantId, showWater);
         } else {
             views = getGardenGridRemoteView(context);
@@ -40,11 +54,40 @@ public class PlantWidgetProvider extends AppWidgetProvider {
         appWidgetManager.updateAppWidget(widgetID, views);
     }
 
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_REFRESH_ON_TRANSITION.equals(intent.getAction())) {
+            super.onReceive(context, intent);
+            return;
+        }
+
+        // Refreshes off the main thread, keeping the broadcast alive until the widgets are updated
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PlantWateringService.refreshWidgets(appContext);
+                } finally {
+                    pendingResult.finish();
+                }
+            }
+        }, "PlantTransition").start();
+    }
+
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        // The host asked for these widgets to be redrawn, so don't trust what they displayed before
+        WidgetRenderCache.invalidate(appWidgetIds);
         PlantWateringService.startActionUpdatePlantWidgets(context);
     }
 
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        WidgetRenderCache.invalidate(appWidgetIds);
+    }
+
     @Override
     public void onEnabled(Context context) {
         // Enter relevant functionality for when the first widget is created
@@ -52,7 +95,8 @@ public class PlantWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onDisabled(Context context) {
-        // Enter relevant functionality for when the last widget is disabled
+        // No widget left to keep up to date
+        PlantTransitionScheduler.cancel(context);
     }
 
     @Override
@@ -62,13 +106,16 @@ public class PlantWidgetProvider extends AppWidgetProvider {
     }
 
     /**
-     * Updates all plant widgets
+     * Updates all plant widgets, skipping those that already display the given plant
      * @param context - The context of the caller
      * @param appWidgetManager - The widget manager
      * @param imgRes - The image to be displayed at the plant pot location
      * @param appWigetIds - The IDs of the widgets
+     * @return - The IDs of the widgets displaying the garden grid
      */
-    public static void updatePlantWidgets(Context context, AppWidgetManager appWidgetManager, int imgRes, long plantId, int[] appWigetIds, boolean showWateringButton) {
+    public static int[] updatePlantWidgets(Context context, AppWidgetManager appWidgetManager, int imgRes, long plantId, int[] appWigetIds, boolean showWateringButton) {
+        int[] gridWidgetIds = new int[appWigetIds.length];
+        int gridWidgetCount = 0;
         for (int widgetID : appWigetIds) {
             updateAppWidget(
                     context,
@@ -78,7 +125,9 @@ public class PlantWidgetProvider extends AppWidgetProvider {
                     showWateringButton,
                     widgetID
             );
+            if (WidgetRenderCache.isGardenGrid(widgetID)) gridWidgetIds[gridWidgetCount++] = widgetID;
         }
+        return Arrays.copyOf(gridWidgetIds, gridWidgetCount);
     }
 
     /**
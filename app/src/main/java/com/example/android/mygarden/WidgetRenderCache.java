@@ -0,0 +1,167 @@
+package com.example.android.mygarden;
+
+import android.util.SparseArray;
+
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.utils.PlantLifecycle;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what each plant widget last displayed, keyed by widget ID, so a refresh that
+ * wouldn't change anything visible skips the RemoteViews IPC to the widget host. Grid widgets
+ * remember a digest of their cells, so their data set is only notified as changed when a cell
+ * would look different.
+ */
+public final class WidgetRenderCache {
+
+    // Layouts a widget can be rendered with, depending on its size
+    static final int BUCKET_SINGLE_PLANT = 0;
+    static final int BUCKET_GARDEN_GRID = 1;
+
+    private static final SparseArray<RenderState> sRenderStates = new SparseArray<>();
+
+    private static long sSentCount;
+    private static long sSkippedCount;
+    private static long sGridNotifiedCount;
+    private static long sGridSkippedCount;
+
+    private WidgetRenderCache() {
+    }
+
+    /**
+     * Checks whether the widget needs new RemoteViews, and records the new state if it does.
+     * The grid layout only depends on the size bucket, its cells are refreshed separately.
+     *
+     * @return true if the widget must be updated, false if it already shows this state
+     */
+    static synchronized boolean shouldUpdate(int widgetId, int bucket, int imgRes, long plantId,
+                                             boolean showWateringButton) {
+        RenderState state = sRenderStates.get(widgetId);
+        if (state != null && state.bucket == bucket && (bucket == BUCKET_GARDEN_GRID
+                || (state.imgRes == imgRes && state.plantId == plantId
+                && state.showWateringButton == showWateringButton))) {
+            sSkippedCount++;
+            return false;
+        }
+
+        sRenderStates.put(widgetId, new RenderState(bucket, imgRes, plantId, showWateringButton));
+        sSentCount++;
+        return true;
+    }
+
+    /**
+     * Forgets what the widgets displayed, so their next refresh is always sent.
+     * Used when the host asks for a full update, e.g. after it restarted.
+     *
+     * @param widgetIds The IDs of the widgets
+     */
+    static synchronized void invalidate(int[] widgetIds) {
+        for (int widgetId : widgetIds) {
+            sRenderStates.remove(widgetId);
+        }
+    }
+
+    /**
+     * Digests what the garden grid displays: the ID of each plant and its image, which only
+     * depends on its type, status and size
+     *
+     * @param plants     The garden
+     * @param evaluation The state of each plant of the garden
+     * @return A digest that changes, barring a 64-bit collision, whenever a cell changes
+     */
+    public static long digestGrid(PlantSnapshot plants, PlantLifecycle.Evaluation evaluation) {
+        long digest = plants.size;
+        for (int i = 0; i < plants.size; i++) {
+            digest = digest * 31 + plants.ids[i];
+            digest = digest * 31 + plants.types[i];
+            digest = digest * 31 + evaluation.status[i];
+            digest = digest * 31 + evaluation.size[i];
+        }
+        // Spreads the bits, so nearby gardens don't get nearby digests
+        digest ^= digest >>> 33;
+        digest *= 0xff51afd7ed558ccdL;
+        digest ^= digest >>> 33;
+        return digest;
+    }
+
+    /**
+     * Keeps the grid widgets whose cells don't show the digested garden yet, and records that
+     * they will
+     *
+     * @param gridWidgetIds The IDs of the widgets displaying the garden grid
+     * @param digest        The digest of the garden, see {@link #digestGrid}
+     * @return The IDs of the widgets whose data set must be notified as changed
+     */
+    public static synchronized int[] getChangedGrids(int[] gridWidgetIds, long digest) {
+        int[] changedIds = new int[gridWidgetIds.length];
+        int changedCount = 0;
+        for (int widgetId : gridWidgetIds) {
+            RenderState state = sRenderStates.get(widgetId);
+            if (state != null && state.hasGridDigest && state.gridDigest == digest) {
+                sGridSkippedCount++;
+                continue;
+            }
+            if (state != null) {
+                state.gridDigest = digest;
+                state.hasGridDigest = true;
+            }
+            changedIds[changedCount++] = widgetId;
+            sGridNotifiedCount++;
+        }
+        return changedCount == changedIds.length ? changedIds : Arrays.copyOf(changedIds, changedCount);
+    }
+
+    /**
+     * @return Whether the widget was last rendered with the garden grid layout
+     */
+    static synchronized boolean isGardenGrid(int widgetId) {
+        RenderState state = sRenderStates.get(widgetId);
+        return state != null && state.bucket == BUCKET_GARDEN_GRID;
+    }
+
+    /**
+     * @return The number of widget updates sent to the host
+     */
+    public static synchronized long getSentCount() {
+        return sSentCount;
+    }
+
+    /**
+     * @return The number of widget updates skipped because nothing visible changed
+     */
+    public static synchronized long getSkippedCount() {
+        return sSkippedCount;
+    }
+
+    /**
+     * @return The number of grid data set changes notified to the host
+     */
+    public static synchronized long getGridNotifiedCount() {
+        return sGridNotifiedCount;
+    }
+
+    /**
+     * @return The number of grid data set changes skipped because no cell changed
+     */
+    public static synchronized long getGridSkippedCount() {
+        return sGridSkippedCount;
+    }
+
+    private static class RenderState {
+        final int bucket;
+        final int imgRes;
+        final long plantId;
+        final boolean showWateringButton;
+        // Digest of the cells a garden grid widget was last notified with
+        long gridDigest;
+        boolean hasGridDigest;
+
+        RenderState(int bucket, int imgRes, long plantId, boolean showWateringButton) {
+            this.bucket = bucket;
+            this.imgRes = imgRes;
+            this.plantId = plantId;
+            this.showWateringButton = showWateringButton;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+/**
+ * Collects the URIs changed by the provider and notifies the resolver once per URI per burst,
+ * so observers re-query once instead of once per row.
+ * <p>
+ * Changes made outside a batch are flushed after a short window. Changes made inside a batch
+ * are held back until the outermost batch on that thread ends, so observers never see a
+ * notification for data that hasn't been committed yet.
+ */
+class NotificationCoalescer {
+
+    // How long changes are collected before observers are notified
+    private static final long WINDOW_MILLISECONDS = 100;
+    // Above this many changed plants, a single notification on the plants directory is sent instead
+    private static final int MAX_ROW_URIS = 20;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+    private final Set<Uri> mPendingUris = new HashSet<>();
+    private boolean mFlushScheduled;
+
+    // URIs changed by the batch running on the current thread, and how deeply batches are nested
+    private final ThreadLocal<Set<Uri>> mBatchUris = new ThreadLocal<>();
+    private final ThreadLocal<Integer> mBatchDepth = new ThreadLocal<>();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    NotificationCoalescer(ContentResolver resolver) {
+        mResolver = resolver;
+        HandlerThread thread = new HandlerThread("PlantNotifications");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Records a changed URI, to be notified once the current window or batch ends
+     *
+     * @param uri The changed uri
+     */
+    void markDirty(Uri uri) {
+        Set<Uri> batchUris = mBatchUris.get();
+        if (batchUris != null) {
+            batchUris.add(uri);
+            return;
+        }
+
+        synchronized (mPendingUris) {
+            mPendingUris.add(uri);
+            if (mFlushScheduled) return;
+            mFlushScheduled = true;
+        }
+        mHandler.postDelayed(mFlushRunnable, WINDOW_MILLISECONDS);
+    }
+
+    /**
+     * Starts holding back the changes made on the current thread. Batches can be nested.
+     */
+    void beginBatch() {
+        Integer depth = mBatchDepth.get();
+        if (depth == null || depth == 0) {
+            mBatchUris.set(new HashSet<Uri>());
+            mBatchDepth.set(1);
+        } else {
+            mBatchDepth.set(depth + 1);
+        }
+    }
+
+    /**
+     * Ends a batch. When the outermost batch ends its changes, along with any other pending
+     * change, are notified right away.
+     *
+     * @param successful Whether the batch was committed. Changes of a rolled back batch are dropped.
+     */
+    void endBatch(boolean successful) {
+        int depth = mBatchDepth.get() - 1;
+        mBatchDepth.set(depth);
+        if (depth > 0) return;
+
+        Set<Uri> batchUris = mBatchUris.get();
+        mBatchUris.set(null);
+        synchronized (mPendingUris) {
+            if (successful) mPendingUris.addAll(batchUris);
+            if (mPendingUris.isEmpty()) return;
+            mFlushScheduled = true;
+        }
+        mHandler.removeCallbacks(mFlushRunnable);
+        mHandler.post(mFlushRunnable);
+    }
+
+    /**
+     * Notifies the resolver once for every pending URI. A change on the plants directory already
+     * reaches observers of single plants, so row URIs are dropped when the directory is pending,
+     * and replaced by it when there are too many of them.
+     */
+    private void flush() {
+        Uri[] uris;
+        synchronized (mPendingUris) {
+            mFlushScheduled = false;
+            if (mPendingUris.isEmpty()) return;
+            if (mPendingUris.contains(PlantEntry.CONTENT_URI) || mPendingUris.size() > MAX_ROW_URIS) {
+                uris = new Uri[]{PlantEntry.CONTENT_URI};
+            } else {
+                uris = mPendingUris.toArray(new Uri[mPendingUris.size()]);
+            }
+            mPendingUris.clear();
+        }
+
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+}
@@ -17,15 +17,22 @@ package com.example.android.mygarden.provider;
 */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 
+import com.example.android.mygarden.utils.PlantSpecies;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -39,6 +46,11 @@ public class PlantContentProvider extends ContentProvider {
     // and related ints (101, 102, ..) for items in that directory.
     public static final int PLANTS = 100;
     public static final int PLANT_WITH_ID = 101;
+    public static final int PLANTS_PAGE = 102;
+    public static final int PLANTS_SUMMARY = 103;
+
+    // Number of plants in a page when the page URI doesn't specify a limit
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
     // Declare a static variable for the Uri matcher that you construct
     private static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -51,19 +63,59 @@ public class PlantContentProvider extends ContentProvider {
         // Add URI matches
         uriMatcher.addURI(PlantContract.AUTHORITY, PlantContract.PATH_PLANTS, PLANTS);
         uriMatcher.addURI(PlantContract.AUTHORITY, PlantContract.PATH_PLANTS + "/#", PLANT_WITH_ID);
+        uriMatcher.addURI(PlantContract.AUTHORITY,
+                PlantContract.PATH_PLANTS + "/" + PlantContract.PATH_PAGE, PLANTS_PAGE);
+        uriMatcher.addURI(PlantContract.AUTHORITY,
+                PlantContract.PATH_PLANTS + "/" + PlantContract.PATH_SUMMARY, PLANTS_SUMMARY);
         return uriMatcher;
     }
 
     // Member variable for a PlantDbHelper that's initialized in the onCreate() method
     private PlantDbHelper mPlantDbHelper;
 
+    // Collects changed URIs and notifies them once per burst or batch
+    private NotificationCoalescer mNotificationCoalescer;
+
+    // Per-type watering and growth thresholds, loaded once when the provider is created
+    private PlantSpecies mSpecies;
+
+    // Statements applying the species thresholds, built from the catalogue in onCreate().
+    // The watering statement is compiled once and reused by every METHOD_WATER_PLANT call.
+    private String mSqlWaterPlant;
+    private String mSqlWaterPlants;
+    private String mSqlSummary;
+    private String mSqlNextTransition;
+    private SQLiteStatement mWaterPlantStatement;
+
+    // The results of METHOD_WATER_PLANT, shared by every call so watering a plant doesn't
+    // allocate one. Callers must not modify them.
+    private static final Bundle RESULT_PLANT_WATERED = buildRowsUpdatedResult(1);
+    private static final Bundle RESULT_PLANT_NOT_WATERED = buildRowsUpdatedResult(0);
+
+    // Explicit plant IDs are inlined in chunks to stay well below SQLite's statement length limit
+    private static final int WATER_PLANTS_CHUNK_SIZE = 500;
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
         mPlantDbHelper = new PlantDbHelper(context);
+        mNotificationCoalescer = new NotificationCoalescer(context.getContentResolver());
+        mSpecies = PlantSpecies.get(context);
+        buildSpeciesStatements();
         return true;
     }
 
+    /**
+     * Builds the statements that depend on the per-type thresholds. Each threshold becomes a
+     * CASE expression over the plant type, so a single statement handles every species.
+     */
+    private void buildSpeciesStatements() {
+        mSqlWaterPlant = PlantSql.waterPlant(mSpecies);
+        mSqlWaterPlants = PlantSql.waterPlants(mSpecies);
+        mSqlSummary = PlantSql.summary(mSpecies);
+        mSqlNextTransition = PlantSql.nextTransition(mSpecies);
+    }
+
     /***
      * Handles requests to insert a single new row of data
      *
@@ -93,13 +145,85 @@ public class PlantContentProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        // Notify the resolver of the newly inserted row, and return its URI
+        notifyChange(returnUri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
     }
 
+    /***
+     * Inserts all rows in a single transaction and notifies the resolver once.
+     * If any row fails to insert the whole batch is rolled back.
+     *
+     * @param uri
+     * @param values
+     * @return number of rows inserted
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
+        int match = sUriMatcher.match(uri);
+        int plantsInserted = 0;
+        switch (match) {
+            case PLANTS:
+                boolean successful = false;
+                mNotificationCoalescer.beginBatch();
+                db.beginTransaction();
+                try {
+                    for (ContentValues value : values) {
+                        long id = db.insert(PlantEntry.TABLE_NAME, null, value);
+                        if (id <= 0) {
+                            throw new android.database.SQLException("Failed to insert row into " + uri);
+                        }
+                        plantsInserted++;
+                    }
+                    if (plantsInserted != 0) notifyChange(uri);
+                    db.setTransactionSuccessful();
+                    successful = true;
+                } finally {
+                    db.endTransaction();
+                    mNotificationCoalescer.endBatch(successful);
+                }
+                mPlantDbHelper.checkpoint(db);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        return plantsInserted;
+    }
+
+    /***
+     * Applies all operations in a single transaction. The changed URIs are notified once
+     * the transaction is committed, once per URI instead of once per operation.
+     *
+     * @param operations
+     * @return the result of each operation
+     * @throws OperationApplicationException
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        boolean successful = false;
+        mNotificationCoalescer.beginBatch();
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            db.endTransaction();
+            mNotificationCoalescer.endBatch(successful);
+        }
+        mPlantDbHelper.checkpoint(db);
+
+        return results;
+    }
+
     /***
      * Handles requests for data by URI
      *
@@ -142,6 +266,16 @@ public class PlantContentProvider extends ContentProvider {
                         null,
                         sortOrder);
                 break;
+            case PLANTS_PAGE:
+                retCursor = queryPage(db, uri, projection);
+                // Single plant changes are notified on their own URI, which isn't under the
+                // page path, so watch the whole directory instead
+                retCursor.setNotificationUri(getContext().getContentResolver(), PlantEntry.CONTENT_URI);
+                return retCursor;
+            case PLANTS_SUMMARY:
+                retCursor = querySummary(db, uri);
+                retCursor.setNotificationUri(getContext().getContentResolver(), PlantEntry.CONTENT_URI);
+                return retCursor;
             // Default exception
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -154,6 +288,67 @@ public class PlantContentProvider extends ContentProvider {
         return retCursor;
     }
 
+    /**
+     * Queries one page of plants ordered by (createdAt, _id), starting after the row given by
+     * the "after" parameter of the URI
+     *
+     * @param db         The readable database
+     * @param uri        The page URI
+     * @param projection The columns to return
+     * @return A cursor over at most "limit" plants
+     */
+    private static Cursor queryPage(SQLiteDatabase db, Uri uri, String[] projection) {
+        String afterParam = uri.getQueryParameter(PlantContract.PARAM_AFTER);
+        String limitParam = uri.getQueryParameter(PlantContract.PARAM_LIMIT);
+
+        String selection = null;
+        String[] selectionArgs = null;
+        int limit = DEFAULT_PAGE_SIZE;
+        try {
+            if (afterParam != null) {
+                String[] after = afterParam.split(",");
+                if (after.length != 2) throw new IllegalArgumentException("Invalid page uri: " + uri);
+                String createdAt = String.valueOf(Long.parseLong(after[0]));
+                String id = String.valueOf(Long.parseLong(after[1]));
+                selection = PlantSql.PAGE_SELECTION;
+                selectionArgs = new String[]{createdAt, createdAt, id};
+            }
+            if (limitParam != null) limit = Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page uri: " + uri, e);
+        }
+        if (limit <= 0) throw new IllegalArgumentException("Invalid page uri: " + uri);
+
+        return db.query(PlantEntry.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                PlantSql.PAGE_SORT_ORDER,
+                String.valueOf(limit));
+    }
+
+    /**
+     * Counts the plants per status and size at the time given by the "now" parameter of the URI
+     * (or the current time), using the same per-type thresholds as PlantLifecycle
+     *
+     * @param db  The readable database
+     * @param uri The summary URI
+     * @return A single row cursor with the PlantSummary columns
+     */
+    private Cursor querySummary(SQLiteDatabase db, Uri uri) {
+        String nowParam = uri.getQueryParameter(PlantContract.PARAM_NOW);
+        long now;
+        try {
+            now = nowParam == null ? System.currentTimeMillis() : Long.parseLong(nowParam);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid summary uri: " + uri, e);
+        }
+
+        return db.rawQuery(mSqlSummary, new String[]{String.valueOf(now)});
+    }
+
     /***
      * Deletes a single row of data
      *
@@ -183,7 +378,7 @@ public class PlantContentProvider extends ContentProvider {
         // Notify the resolver of a change and return the number of items deleted
         if (plantsDeleted != 0) {
             // A plant (or more) was deleted, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of plant deleted
         return plantsDeleted;
@@ -233,13 +428,171 @@ public class PlantContentProvider extends ContentProvider {
         // Notify the resolver of a change and return the number of items updated
         if (plantsUpdated != 0) {
             // A place (or more) was updated, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of places deleted
         return plantsUpdated;
     }
 
 
+    /***
+     * Handles the provider methods that don't map onto a plain insert, query, update or delete
+     *
+     * @param method One of the PlantContract METHOD_ constants
+     * @param arg    Unused
+     * @param extras The method arguments
+     * @return The method results. Those of METHOD_WATER_PLANT are shared and must not be modified.
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (extras == null) throw new IllegalArgumentException("Missing extras for method: " + method);
+        switch (method) {
+            case PlantContract.METHOD_GET_NEXT_TRANSITION:
+                Bundle result = new Bundle();
+                long nextTransitionAt = getNextTransition(
+                        extras.getLong(PlantContract.EXTRA_NOW, System.currentTimeMillis()));
+                if (nextTransitionAt != Long.MAX_VALUE) {
+                    result.putLong(PlantContract.EXTRA_NEXT_TRANSITION_AT, nextTransitionAt);
+                }
+                return result;
+            case PlantContract.METHOD_WATER_PLANT:
+                int plantsUpdated = waterPlant(
+                        extras.getLong(PlantContract.EXTRA_PLANT_ID, PlantContract.INVALID_PLANT_ID),
+                        extras.getLong(PlantContract.EXTRA_WATERED_AT, System.currentTimeMillis()));
+                return plantsUpdated != 0 ? RESULT_PLANT_WATERED : RESULT_PLANT_NOT_WATERED;
+            case PlantContract.METHOD_WATER_PLANTS:
+                return buildRowsUpdatedResult(waterPlants(
+                        extras.getLongArray(PlantContract.EXTRA_PLANT_IDS),
+                        extras.getLong(PlantContract.EXTRA_WATERED_AT, System.currentTimeMillis())));
+            default:
+                throw new UnsupportedOperationException("Unknown method: " + method);
+        }
+    }
+
+    private static Bundle buildRowsUpdatedResult(int rowsUpdated) {
+        Bundle result = new Bundle();
+        result.putInt(PlantContract.EXTRA_ROWS_UPDATED, rowsUpdated);
+        return result;
+    }
+
+    /**
+     * Finds the earliest time after now at which any plant crosses one of the thresholds
+     * of its species. For each type and threshold this is the oldest timestamp that hasn't
+     * crossed it yet, which is a single seek in the matching index.
+     *
+     * @param now The current time
+     * @return The time of the next transition, or Long.MAX_VALUE if no plant will change anymore
+     */
+    private long getNextTransition(long now) {
+        final SQLiteDatabase db = mPlantDbHelper.getReadableDatabase();
+
+        long nextTransitionAt = Long.MAX_VALUE;
+        Cursor cursor = db.rawQuery(mSqlNextTransition, new String[]{String.valueOf(now)});
+        try {
+            if (cursor.moveToFirst()) {
+                // One column per type and threshold, NULL when no plant will cross it
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    if (cursor.isNull(i)) continue;
+                    nextTransitionAt = Math.min(nextTransitionAt, cursor.getLong(i));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return nextTransitionAt;
+    }
+
+    /**
+     * Waters every plant that can be watered: last watered longer ago than the minimum time
+     * between waterings of its species, and not dead. All plants are updated in one transaction and the resolver is notified once.
+     *
+     * @param plantIds  The plants to consider, or null for the whole garden
+     * @param wateredAt The watering time
+     * @return number of rows affected
+     */
+    private int waterPlants(long[] plantIds, long wateredAt) {
+        final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
+
+        int plantsUpdated = 0;
+        if (plantIds == null) {
+            SQLiteStatement statement = db.compileStatement(mSqlWaterPlants);
+            try {
+                statement.bindLong(1, wateredAt);
+                plantsUpdated = statement.executeUpdateDelete();
+            } finally {
+                statement.close();
+            }
+        } else if (plantIds.length > 0) {
+            db.beginTransaction();
+            try {
+                for (int start = 0; start < plantIds.length; start += WATER_PLANTS_CHUNK_SIZE) {
+                    int end = Math.min(start + WATER_PLANTS_CHUNK_SIZE, plantIds.length);
+                    StringBuilder sql = new StringBuilder(mSqlWaterPlants)
+                            .append(" AND ").append(PlantEntry._ID).append(" IN (");
+                    for (int i = start; i < end; i++) {
+                        if (i > start) sql.append(',');
+                        sql.append(plantIds[i]);
+                    }
+                    sql.append(')');
+
+                    SQLiteStatement statement = db.compileStatement(sql.toString());
+                    try {
+                        statement.bindLong(1, wateredAt);
+                        plantsUpdated += statement.executeUpdateDelete();
+                    } finally {
+                        statement.close();
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        if (plantsUpdated != 0) {
+            notifyChange(PlantEntry.CONTENT_URI);
+        }
+        return plantsUpdated;
+    }
+
+    /**
+     * Waters a single plant through the precompiled statement. The "not already dead" check is
+     * part of the UPDATE itself so no prior query is needed.
+     * <p>
+     * Nothing is allocated here per call: the change is notified on the plants directory rather
+     * than on a row URI built for the plant, which observers of single plants receive too. The
+     * coalescer only allocates an entry for the first change of each notification window.
+     *
+     * @param plantId   The plant to water
+     * @param wateredAt The watering time
+     * @return number of rows affected (0 if the plant doesn't exist or is already dead)
+     */
+    private int waterPlant(long plantId, long wateredAt) {
+        int plantsUpdated;
+        synchronized (this) {
+            if (mWaterPlantStatement == null) {
+                mWaterPlantStatement = mPlantDbHelper.getWritableDatabase().compileStatement(mSqlWaterPlant);
+            }
+            mWaterPlantStatement.bindLong(1, wateredAt);
+            mWaterPlantStatement.bindLong(2, plantId);
+            plantsUpdated = mWaterPlantStatement.executeUpdateDelete();
+        }
+
+        if (plantsUpdated != 0) {
+            notifyChange(PlantEntry.CONTENT_URI);
+        }
+        return plantsUpdated;
+    }
+
+    /**
+     * Queues a change notification, coalesced with the other changes of the same burst or batch
+     *
+     * @param uri The changed uri
+     */
+    private void notifyChange(Uri uri) {
+        mNotificationCoalescer.markDirty(uri);
+    }
+
     @Override
     public String getType(@NonNull Uri uri) {
         throw new UnsupportedOperationException("Not yet implemented");
@@ -30,18 +30,110 @@ public class PlantContract {
     // Define the possible paths for accessing data in this contract
     // This is the path for the "plants" directory
     public static final String PATH_PLANTS = "plants";
+    // This is the path for a keyset-paginated slice of the "plants" directory
+    public static final String PATH_PAGE = "page";
+    // This is the path for the aggregated garden summary
+    public static final String PATH_SUMMARY = "summary";
+
+    // Query parameters of the page path:
+    // after=<createdAt>,<_id> of the last row of the previous page (omit for the first page)
+    // limit=<number of rows> in the page
+    public static final String PARAM_AFTER = "after";
+    public static final String PARAM_LIMIT = "limit";
+    // Query parameter of the summary path: now=<time in milliseconds> to evaluate the plants at
+    public static final String PARAM_NOW = "now";
 
     public static final long INVALID_PLANT_ID = -1;
 
+    // Provider methods, invoked through ContentResolver#call
+    // Waters a single plant (EXTRA_PLANT_ID) at EXTRA_WATERED_AT unless it's already dead. The result
+    // (EXTRA_ROWS_UPDATED) is shared between calls and must not be modified
+    public static final String METHOD_WATER_PLANT = "waterPlant";
+    // Waters, at EXTRA_WATERED_AT, every plant that can be watered (past the minimum time between
+    // waterings of its species and not dead), optionally restricted to the plants in EXTRA_PLANT_IDS
+    public static final String METHOD_WATER_PLANTS = "waterPlants";
+    // Finds the earliest time after EXTRA_NOW at which any plant changes status, size or becomes
+    // waterable again, returned as EXTRA_NEXT_TRANSITION_AT (absent if nothing will change)
+    public static final String METHOD_GET_NEXT_TRANSITION = "getNextTransition";
+
+    // Keys of the extras passed to and returned by the provider methods
+    public static final String EXTRA_PLANT_ID = "plantId";
+    public static final String EXTRA_PLANT_IDS = "plantIds";
+    public static final String EXTRA_WATERED_AT = "wateredAt";
+    public static final String EXTRA_ROWS_UPDATED = "rowsUpdated";
+    public static final String EXTRA_NOW = "now";
+    public static final String EXTRA_NEXT_TRANSITION_AT = "nextTransitionAt";
+
     public static final class PlantEntry implements BaseColumns {
 
         // TaskEntry content URI = base content URI + path
         public static final Uri CONTENT_URI =
                 BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
 
+        // Plants ordered by creation time, one page at a time
+        public static final Uri PAGE_URI =
+                CONTENT_URI.buildUpon().appendPath(PATH_PAGE).build();
+
         public static final String TABLE_NAME = "plants";
         public static final String COLUMN_PLANT_TYPE = "plantType";
         public static final String COLUMN_CREATION_TIME = "createdAt";
         public static final String COLUMN_LAST_WATERED_TIME = "lastWateredAt";
+
+        /**
+         * Builds the URI of the first page of plants
+         *
+         * @param limit The maximum number of plants in the page
+         */
+        public static Uri buildPageUri(int limit) {
+            return PAGE_URI.buildUpon()
+                    .appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Builds the URI of the page that follows the given plant
+         *
+         * @param afterCreatedAt The creation time of the last plant of the previous page
+         * @param afterId        The ID of the last plant of the previous page
+         * @param limit          The maximum number of plants in the page
+         */
+        public static Uri buildPageUri(long afterCreatedAt, long afterId, int limit) {
+            return PAGE_URI.buildUpon()
+                    .appendQueryParameter(PARAM_AFTER, afterCreatedAt + "," + afterId)
+                    .appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+    }
+
+    /**
+     * Single row of plant counts per status and size, as returned by the summary path.
+     * The buckets follow the thresholds in PlantUtils.
+     */
+    public static final class PlantSummary {
+
+        public static final Uri CONTENT_URI =
+                PlantEntry.CONTENT_URI.buildUpon().appendPath(PATH_SUMMARY).build();
+
+        public static final String COLUMN_TOTAL = "total";
+        // Status buckets
+        public static final String COLUMN_ALIVE = "alive";
+        public static final String COLUMN_DYING = "dying";
+        public static final String COLUMN_DEAD = "dead";
+        // Size buckets (empty pots haven't sprouted yet)
+        public static final String COLUMN_EMPTY = "empty";
+        public static final String COLUMN_TINY = "tiny";
+        public static final String COLUMN_JUVENILE = "juvenile";
+        public static final String COLUMN_FULLY_GROWN = "fullyGrown";
+
+        /**
+         * Builds the URI of the garden summary evaluated at the given time
+         *
+         * @param now The time (in milliseconds) to evaluate the plants at
+         */
+        public static Uri buildSummaryUri(long now) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_NOW, String.valueOf(now))
+                    .build();
+        }
     }
 }
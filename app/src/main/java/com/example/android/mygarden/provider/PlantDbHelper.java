@@ -17,41 +17,116 @@ package com.example.android.mygarden.provider;
 */
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
-import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.R;
 
 public class PlantDbHelper extends SQLiteOpenHelper {
 
     // The database name
     private static final String DATABASE_NAME = "shushme.db";
 
-    // If you change the database schema, you must increment the database version
-    private static final int DATABASE_VERSION = 1;
+    // The schema version, see PlantSql to change the schema
+    private static final int DATABASE_VERSION = PlantSql.SCHEMA_VERSION;
+
+    // Number of WAL pages after which SQLite checkpoints on its own
+    private static final int WAL_AUTO_CHECKPOINT_PAGES = 1000;
+
+    private final boolean mWriteAheadLogging;
 
     // Constructor
     public PlantDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, context.getResources().getBoolean(R.bool.plant_db_write_ahead_logging));
+    }
+
+    /**
+     * @param context           The context
+     * @param writeAheadLogging Whether to open the database in write-ahead logging mode
+     */
+    public PlantDbHelper(Context context, boolean writeAheadLogging) {
+        this(context, DATABASE_NAME, writeAheadLogging);
+    }
+
+    /**
+     * @param context           The context
+     * @param name              The database file name, so tests don't touch the app's database
+     * @param writeAheadLogging Whether to open the database in write-ahead logging mode
+     */
+    PlantDbHelper(Context context, String name, boolean writeAheadLogging) {
+        super(context, name, null, DATABASE_VERSION);
+        // The database can only be configured before it's used from API 16 onwards, older
+        // versions keep the rollback journal
+        mWriteAheadLogging = writeAheadLogging
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+        if (mWriteAheadLogging) {
+            // Lets readers keep using the last committed snapshot while a write is in progress
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (!mWriteAheadLogging) return;
+        runPragma(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTO_CHECKPOINT_PAGES);
+    }
+
+    /**
+     * Folds the write-ahead log back into the database file without blocking readers or writers.
+     * Meant to be called after large batches so the log doesn't keep growing between
+     * automatic checkpoints. Does nothing when write-ahead logging is off.
+     *
+     * @param db The writable database
+     */
+    public void checkpoint(SQLiteDatabase db) {
+        if (!mWriteAheadLogging || db.inTransaction()) return;
+        runPragma(db, "PRAGMA wal_checkpoint(PASSIVE)");
+    }
+
+    /**
+     * Runs a pragma that returns a row, which execSQL() refuses to do
+     */
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
 
         // Create a table to hold the plants data
-        final String SQL_CREATE_PLANTS_TABLE = "CREATE TABLE " + PlantEntry.TABLE_NAME + " (" +
-                PlantEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                PlantEntry.COLUMN_PLANT_TYPE + " INTEGER NOT NULL, " +
-                PlantEntry.COLUMN_CREATION_TIME + " TIMESTAMP NOT NULL, " +
-                PlantEntry.COLUMN_LAST_WATERED_TIME + " TIMESTAMP NOT NULL)";
+        sqLiteDatabase.execSQL(PlantSql.CREATE_PLANTS_TABLE);
 
-        sqLiteDatabase.execSQL(SQL_CREATE_PLANTS_TABLE);
+        // The table above is the version 1 schema, bring it up to date
+        migrate(sqLiteDatabase, 1, DATABASE_VERSION);
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        // For now simply drop the table and create a new one.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + PlantEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // onUpgrade already runs inside a transaction, so a failing step leaves the old schema intact
+        migrate(sqLiteDatabase, oldVersion, newVersion);
+    }
+
+    /**
+     * Applies every migration step between the two versions, one version at a time,
+     * keeping the existing rows
+     *
+     * @param db         The database being migrated
+     * @param oldVersion The version the database is currently at
+     * @param newVersion The version to migrate to
+     */
+    private static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            for (String sql : PlantSql.getMigration(version)) {
+                db.execSQL(sql);
+            }
+        }
     }
 }
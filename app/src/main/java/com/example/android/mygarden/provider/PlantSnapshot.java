@@ -0,0 +1,157 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of the whole garden held in parallel primitive arrays, ordered by
+ * (creation time, ID). The table is read one keyset page at a time and every cursor is closed
+ * right away, so no cursor or large CursorWindow outlives the load.
+ */
+public final class PlantSnapshot {
+
+    // Plants read per page while loading
+    private static final int PAGE_SIZE = 500;
+
+    public static final PlantSnapshot EMPTY = new PlantSnapshot(0, new long[0], new int[0], new long[0], new long[0]);
+
+    public final int size;
+    public final long[] ids;
+    public final int[] types;
+    public final long[] createdAt;
+    public final long[] wateredAt;
+
+    private PlantSnapshot(int size, long[] ids, int[] types, long[] createdAt, long[] wateredAt) {
+        this.size = size;
+        this.ids = ids;
+        this.types = types;
+        this.createdAt = createdAt;
+        this.wateredAt = wateredAt;
+    }
+
+    /**
+     * Reads every plant through the provider's page URI
+     *
+     * @param resolver The content resolver
+     * @return The snapshot of the garden
+     */
+    public static PlantSnapshot load(ContentResolver resolver) {
+        return append(resolver, EMPTY, Integer.MAX_VALUE, PAGE_SIZE);
+    }
+
+    /**
+     * Reads the plants that follow the last plant of a snapshot through the provider's page URI,
+     * one page at a time. Each page's cursor is closed as soon as it's copied, so at most one
+     * page is held in a cursor window whatever the number of plants read.
+     *
+     * @param resolver The content resolver
+     * @param plants   The plants read so far, EMPTY to read from the first plant
+     * @param limit    The maximum number of plants to read, Integer.MAX_VALUE for all of them
+     * @param pageSize The number of plants read per query
+     * @return A snapshot of the given plants followed by the plants read, or the given snapshot
+     * itself if there are no more plants
+     */
+    public static PlantSnapshot append(ContentResolver resolver, PlantSnapshot plants, int limit,
+                                       int pageSize) {
+        int size = plants.size;
+        int capacity = size + Math.min(limit, pageSize);
+        long[] ids = Arrays.copyOf(plants.ids, capacity);
+        int[] types = Arrays.copyOf(plants.types, capacity);
+        long[] createdAt = Arrays.copyOf(plants.createdAt, capacity);
+        long[] wateredAt = Arrays.copyOf(plants.wateredAt, capacity);
+
+        int remaining = limit;
+        while (remaining > 0) {
+            int pageLimit = Math.min(pageSize, remaining);
+            // Each page starts right after the last plant read
+            Uri pageUri = size == 0
+                    ? PlantEntry.buildPageUri(pageLimit)
+                    : PlantEntry.buildPageUri(createdAt[size - 1], ids[size - 1], pageLimit);
+            Cursor cursor = resolver.query(pageUri, null, null, null, null);
+            if (cursor == null) break;
+
+            int count;
+            try {
+                count = cursor.getCount();
+                if (size + count > ids.length) {
+                    capacity = Math.max(ids.length * 2, size + count);
+                    ids = Arrays.copyOf(ids, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                    createdAt = Arrays.copyOf(createdAt, capacity);
+                    wateredAt = Arrays.copyOf(wateredAt, capacity);
+                }
+                size = readRows(cursor, size, ids, types, createdAt, wateredAt);
+            } finally {
+                cursor.close();
+            }
+
+            remaining -= count;
+            if (count < pageLimit) break;
+        }
+
+        if (size == plants.size) return plants;
+        return new PlantSnapshot(size, ids, types, createdAt, wateredAt);
+    }
+
+    /**
+     * Reads the remaining rows of the cursor into the arrays, starting at the given offset
+     *
+     * @return The offset after the last row read
+     */
+    private static int readRows(Cursor cursor, int offset, long[] ids, int[] types,
+                                long[] createdAt, long[] wateredAt) {
+        int idIndex = cursor.getColumnIndex(PlantEntry._ID);
+        int typeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+        int createTimeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
+        int waterTimeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
+        while (offset < ids.length && cursor.moveToNext()) {
+            ids[offset] = cursor.getLong(idIndex);
+            types[offset] = cursor.getInt(typeIndex);
+            createdAt[offset] = cursor.getLong(createTimeIndex);
+            wateredAt[offset] = cursor.getLong(waterTimeIndex);
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * Finds a plant by its creation time and ID, which is how the snapshot is ordered
+     *
+     * @return The position of the plant, or -1 if it isn't in the snapshot
+     */
+    public int indexOf(long plantCreatedAt, long plantId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = createdAt[mid] != plantCreatedAt
+                    ? (createdAt[mid] < plantCreatedAt ? -1 : 1)
+                    : (ids[mid] != plantId ? (ids[mid] < plantId ? -1 : 1) : 0);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
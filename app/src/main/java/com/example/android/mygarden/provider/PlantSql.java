@@ -0,0 +1,188 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantContract.PlantSummary;
+import com.example.android.mygarden.utils.PlantSpecies;
+import com.example.android.mygarden.utils.PlantUtils;
+
+/**
+ * The SQL of the plants table: its schema, the migrations between schema versions and the
+ * statements PlantContentProvider runs. Kept free of Android classes so the benchmark module
+ * runs the exact same SQL as the app.
+ */
+public final class PlantSql {
+
+    // If you change the schema, you must increment the version and add a matching migration
+    public static final int SCHEMA_VERSION = 3;
+
+    // The version 1 table, the later versions are reached through the migrations
+    public static final String CREATE_PLANTS_TABLE = "CREATE TABLE " + PlantEntry.TABLE_NAME + " (" +
+            PlantEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+            PlantEntry.COLUMN_PLANT_TYPE + " INTEGER NOT NULL, " +
+            PlantEntry.COLUMN_CREATION_TIME + " TIMESTAMP NOT NULL, " +
+            PlantEntry.COLUMN_LAST_WATERED_TIME + " TIMESTAMP NOT NULL)";
+
+    // Indexes backing the sort orders used by the garden screens, widgets and watering service
+    public static final String INDEX_LAST_WATERED_TIME = "plants_lastWateredAt_idx";
+    public static final String INDEX_CREATION_TIME = "plants_createdAt_idx";
+    // Indexes backing the per-species next transition lookups
+    public static final String INDEX_TYPE_LAST_WATERED_TIME = "plants_plantType_lastWateredAt_idx";
+    public static final String INDEX_TYPE_CREATION_TIME = "plants_plantType_createdAt_idx";
+
+    // Statements bringing the schema from each version to the next, indexed by the old version
+    private static final String[][] MIGRATIONS = {
+            // There is no version 0
+            null,
+            // Version 2 indexes the timestamp columns the plant list, widgets and watering
+            // service sort on
+            {
+                    createIndex(INDEX_LAST_WATERED_TIME, PlantEntry.COLUMN_LAST_WATERED_TIME),
+                    createIndex(INDEX_CREATION_TIME, PlantEntry.COLUMN_CREATION_TIME)
+            },
+            // Version 3 indexes the timestamp columns per plant type, as thresholds differ
+            // per species
+            {
+                    createIndex(INDEX_TYPE_LAST_WATERED_TIME,
+                            PlantEntry.COLUMN_PLANT_TYPE + ", " + PlantEntry.COLUMN_LAST_WATERED_TIME),
+                    createIndex(INDEX_TYPE_CREATION_TIME,
+                            PlantEntry.COLUMN_PLANT_TYPE + ", " + PlantEntry.COLUMN_CREATION_TIME)
+            }
+    };
+
+    // Keyset condition selecting the plants after a given (createdAt, _id).
+    // The leading createdAt>=? lets SQLite seek in the createdAt index instead of scanning.
+    public static final String PAGE_SELECTION =
+            PlantEntry.COLUMN_CREATION_TIME + ">=? AND (" +
+                    PlantEntry.COLUMN_CREATION_TIME + ">? OR " + PlantEntry._ID + ">?)";
+    public static final String PAGE_SORT_ORDER =
+            PlantEntry.COLUMN_CREATION_TIME + ", " + PlantEntry._ID;
+
+    private PlantSql() {
+    }
+
+    private static String createIndex(String name, String columns) {
+        return "CREATE INDEX IF NOT EXISTS " + name + " ON " + PlantEntry.TABLE_NAME + " (" + columns + ")";
+    }
+
+    /**
+     * @param oldVersion The version to migrate from
+     * @return The statements migrating the schema from that version to the next one
+     * @throws IllegalStateException if there is no migration from that version
+     */
+    public static String[] getMigration(int oldVersion) {
+        if (oldVersion < 1 || oldVersion >= MIGRATIONS.length) {
+            throw new IllegalStateException("No migration from version " + oldVersion);
+        }
+        return MIGRATIONS[oldVersion];
+    }
+
+    /**
+     * Builds the statement watering a plant (?2) at ?1 unless it has gone longer than its max
+     * age without water
+     */
+    public static String waterPlant(PlantSpecies species) {
+        String wateredAt = PlantEntry.COLUMN_LAST_WATERED_TIME;
+        return "UPDATE " + PlantEntry.TABLE_NAME +
+                " SET " + wateredAt + "=?1" +
+                " WHERE " + PlantEntry._ID + "=?2" +
+                " AND " + wateredAt + ">?1-" + maxAge(species);
+    }
+
+    /**
+     * Builds the statement watering, at ?1, every plant that was last watered long enough ago
+     * but isn't dead yet
+     */
+    public static String waterPlants(PlantSpecies species) {
+        String wateredAt = PlantEntry.COLUMN_LAST_WATERED_TIME;
+        return "UPDATE " + PlantEntry.TABLE_NAME +
+                " SET " + wateredAt + "=?1" +
+                " WHERE " + wateredAt + "<?1-" +
+                species.toSqlExpression(PlantEntry.COLUMN_PLANT_TYPE, PlantSpecies.MIN_AGE_BETWEEN_WATER) +
+                " AND " + wateredAt + ">?1-" + maxAge(species);
+    }
+
+    /**
+     * Builds the query counting the plants per status and size bucket at ?1 in one pass
+     */
+    public static String summary(PlantSpecies species) {
+        String type = PlantEntry.COLUMN_PLANT_TYPE;
+        String wateredAt = PlantEntry.COLUMN_LAST_WATERED_TIME;
+        String createdAt = PlantEntry.COLUMN_CREATION_TIME;
+        String dangerAge = species.toSqlExpression(type, PlantSpecies.DANGER_AGE_WITHOUT_WATER);
+        String maxAge = maxAge(species);
+        String juvenileAge = species.toSqlExpression(type, PlantSpecies.JUVENILE_AGE);
+        String fullyGrownAge = species.toSqlExpression(type, PlantSpecies.FULLY_GROWN_AGE);
+
+        return "SELECT " +
+                "COUNT(*) AS " + PlantSummary.COLUMN_TOTAL + ", " +
+                "IFNULL(SUM(" + wateredAt + ">=?1-" + dangerAge + "), 0) AS " + PlantSummary.COLUMN_ALIVE + ", " +
+                "IFNULL(SUM(" + wateredAt + "<?1-" + dangerAge + " AND " +
+                wateredAt + ">=?1-" + maxAge + "), 0) AS " + PlantSummary.COLUMN_DYING + ", " +
+                "IFNULL(SUM(" + wateredAt + "<?1-" + maxAge + "), 0) AS " + PlantSummary.COLUMN_DEAD + ", " +
+                "IFNULL(SUM(" + createdAt + ">=?1-" + PlantUtils.TINY_AGE + "), 0) AS " + PlantSummary.COLUMN_EMPTY + ", " +
+                "IFNULL(SUM(" + createdAt + "<?1-" + PlantUtils.TINY_AGE + " AND " +
+                createdAt + ">=?1-" + juvenileAge + "), 0) AS " + PlantSummary.COLUMN_TINY + ", " +
+                "IFNULL(SUM(" + createdAt + "<?1-" + juvenileAge + " AND " +
+                createdAt + ">=?1-" + fullyGrownAge + "), 0) AS " + PlantSummary.COLUMN_JUVENILE + ", " +
+                "IFNULL(SUM(" + createdAt + "<?1-" + fullyGrownAge + "), 0) AS " + PlantSummary.COLUMN_FULLY_GROWN +
+                " FROM " + PlantEntry.TABLE_NAME;
+    }
+
+    /**
+     * Builds the query returning, for each type and threshold, the next time a plant of that
+     * type crosses the threshold after ?1: the oldest timestamp that hasn't crossed it yet, a
+     * single seek in the (plantType, timestamp) indexes. Types missing from the catalogue use
+     * the defaults. Each column is NULL when no plant will cross its threshold.
+     */
+    public static String nextTransition(PlantSpecies species) {
+        String type = PlantEntry.COLUMN_PLANT_TYPE;
+        String wateredAt = PlantEntry.COLUMN_LAST_WATERED_TIME;
+        String createdAt = PlantEntry.COLUMN_CREATION_TIME;
+
+        int typeCount = species.getTypeCount();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        sql.append(nextTransitionColumn(createdAt, PlantUtils.TINY_AGE, null));
+        for (int t = 0; t <= typeCount; t++) {
+            String typeFilter = t < typeCount
+                    ? type + "=" + t
+                    : "(" + type + "<0 OR " + type + ">=" + typeCount + ")";
+            sql.append(", ").append(nextTransitionColumn(wateredAt, species.getMinAgeBetweenWater(t), typeFilter))
+                    .append(", ").append(nextTransitionColumn(wateredAt, species.getDangerAgeWithoutWater(t), typeFilter))
+                    .append(", ").append(nextTransitionColumn(wateredAt, species.getMaxAgeWithoutWater(t), typeFilter))
+                    .append(", ").append(nextTransitionColumn(createdAt, species.getJuvenileAge(t), typeFilter))
+                    .append(", ").append(nextTransitionColumn(createdAt, species.getFullyGrownAge(t), typeFilter));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Builds a sub-query returning the earliest time after ?1 at which a plant matching the
+     * filter gets older than the threshold, measured from the given column (NULL if none will)
+     */
+    private static String nextTransitionColumn(String column, long threshold, String typeFilter) {
+        // A plant changes as soon as its age is strictly over the threshold
+        return "(SELECT MIN(" + column + ")+" + (threshold + 1) + " FROM " + PlantEntry.TABLE_NAME +
+                " WHERE " + (typeFilter != null ? typeFilter + " AND " : "") +
+                column + ">?1-" + threshold + ")";
+    }
+
+    private static String maxAge(PlantSpecies species) {
+        return species.toSqlExpression(PlantEntry.COLUMN_PLANT_TYPE, PlantSpecies.MAX_AGE_WITHOUT_WATER);
+    }
+}
@@ -1,9 +1,7 @@
 package com.example.android.mygarden.service;
 
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -11,13 +9,12 @@ import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import com.example.android.mygarden.R;
-import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantSnapshot;
 import com.example.android.mygarden.ui.PlantDetailActivity;
+import com.example.android.mygarden.utils.PlantLifecycle;
+import com.example.android.mygarden.utils.PlantSpecies;
 import com.example.android.mygarden.utils.PlantUtils;
 
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
-
 /**
  * Created by Yuri Levenhagen on 2018-01-09 as part
  * of the Udacity-Google Advanced Android App Development course.
@@ -48,9 +45,14 @@ public class GridWidgetService extends RemoteViewsService {
 class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     private Context mContext;
-    private Cursor mCursor;
     private static final String LOG_TAG = GridRemoteViewsFactory.class.getCanonicalName();
 
+    // The garden as of the last data set change, the image of each plant and the views built
+    // for it, all indexed by position. Views of plants whose image didn't change are carried over.
+    private PlantSnapshot mSnapshot = PlantSnapshot.EMPTY;
+    private int[] mImgRes = new int[0];
+    private RemoteViews[] mViews = new RemoteViews[0];
+
     GridRemoteViewsFactory(Context context) {
         mContext = context;
     }
@@ -62,50 +64,62 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     @Override
     public void onDataSetChanged() {
-        if (mCursor != null) mCursor.close();
-
-        mCursor = mContext.getContentResolver().query(
-            BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(),
-                null,
-                null,
-                null,
-                PlantContract.PlantEntry.COLUMN_CREATION_TIME
-        );
+        PlantSnapshot previousSnapshot = mSnapshot;
+        int[] previousImgRes = mImgRes;
+        RemoteViews[] previousViews = mViews;
+
+        PlantSnapshot snapshot = PlantSnapshot.load(mContext.getContentResolver());
+        int[] imgRes = new int[snapshot.size];
+        RemoteViews[] views = new RemoteViews[snapshot.size];
+
+        // Evaluates the whole garden at once, then works out which plants look different
+        // from the previous data set
+        PlantLifecycle.Evaluation evaluation = PlantLifecycle.evaluate(
+                PlantSpecies.get(mContext), snapshot.types, snapshot.createdAt, snapshot.wateredAt,
+                snapshot.size, System.currentTimeMillis());
+        for (int i = 0; i < snapshot.size; i++) {
+            imgRes[i] = PlantUtils.getPlantImgRes(
+                    mContext,
+                    snapshot.types[i],
+                    evaluation.status[i],
+                    evaluation.size[i]
+            );
+            int previous = previousSnapshot.indexOf(snapshot.createdAt[i], snapshot.ids[i]);
+            if (previous >= 0 && previousImgRes[previous] == imgRes[i]) {
+                views[i] = previousViews[previous];
+            }
+        }
+
+        mSnapshot = snapshot;
+        mImgRes = imgRes;
+        mViews = views;
     }
 
     @Override
     public void onDestroy() {
-        mCursor.close();
+        mSnapshot = PlantSnapshot.EMPTY;
+        mImgRes = new int[0];
+        mViews = new RemoteViews[0];
     }
 
     @Override
     public int getCount() {
-        if (mCursor == null) return 0;
-        return mCursor.getCount();
+        return mSnapshot.size;
     }
 
     @Override
     public RemoteViews getViewAt(int position) {
-        if (mCursor == null || mCursor.getCount() == 0) return null;
-
-        mCursor.moveToPosition(position);
-        long now = System.currentTimeMillis();
-        long wateredAt = mCursor.getLong(mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME));
-        long createdAt = mCursor.getLong(mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_CREATION_TIME));
-        int plantType = mCursor.getInt(mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE));
-        long plantId = mCursor.getLong(mCursor.getColumnIndex(PlantContract.PlantEntry._ID));
-
-        RemoteViews views = new RemoteViews(mContext.getPackageName(), R.layout.plant_widget);
-
-        // Update the plant image
-        int imgRes = PlantUtils.getPlantImageRes(
-                mContext,
-                now - createdAt,
-                now - wateredAt,
-                plantType
-        );
-
-        views.setImageViewResource(R.id.widget_plant_image, imgRes);
+        if (position < 0 || position >= mSnapshot.size) return null;
+
+        // Reuses the views built for this plant if its image didn't change
+        RemoteViews views = mViews[position];
+        if (views != null) return views;
+
+        long plantId = mSnapshot.ids[position];
+        views = new RemoteViews(mContext.getPackageName(), R.layout.plant_widget);
+
+        // Update the plant image, as computed when the data set was loaded
+        views.setImageViewResource(R.id.widget_plant_image, mImgRes[position]);
         views.setTextViewText(R.id.widget_plant_id, Long.toString(plantId));
         // Hide the watter button in GridView mode
         views.setViewVisibility(R.id.widget_water_button, View.GONE);
@@ -117,6 +131,7 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
         fillInIntent.putExtras(extras);
         views.setOnClickFillInIntent(R.id.widget_plant_image, fillInIntent);
 
+        mViews[position] = views;
         return views;
     }
 
@@ -132,12 +147,14 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
     }
 
     @Override
-    public long getItemId(int i) {
-        return 0;
+    public long getItemId(int position) {
+        // Plant IDs are stable, so the host only rebinds the cells whose plant changed
+        if (position < 0 || position >= mSnapshot.size) return position;
+        return mSnapshot.ids[position];
     }
 
     @Override
     public boolean hasStableIds() {
-        return false;
+        return true;
     }
 }
@@ -0,0 +1,94 @@
+package com.example.android.mygarden.service;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+
+import com.example.android.mygarden.PlantWidgetProvider;
+import com.example.android.mygarden.provider.PlantContract;
+
+import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
+
+/**
+ * Arms a single alarm for the next time any plant in the garden changes visually (status, size
+ * or watering button), so the widgets are refreshed exactly when something changes instead of
+ * being polled periodically.
+ */
+public final class PlantTransitionScheduler {
+
+    private PlantTransitionScheduler() {
+    }
+
+    /**
+     * Re-arms the transition alarm from the current state of the garden.
+     * Should be called after each widget refresh, as any change to the garden triggers one.
+     *
+     * @param context    The context
+     * @param hasWidgets Whether any plant widget is placed; the alarm is cancelled otherwise
+     */
+    public static void schedule(Context context, boolean hasWidgets) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = getTransitionPendingIntent(context);
+        if (!hasWidgets) {
+            alarmManager.cancel(pendingIntent);
+            return;
+        }
+
+        Bundle extras = new Bundle();
+        extras.putLong(PlantContract.EXTRA_NOW, System.currentTimeMillis());
+        Bundle result = context.getContentResolver().call(
+                BASE_CONTENT_URI, PlantContract.METHOD_GET_NEXT_TRANSITION, null, extras);
+
+        if (result == null || !result.containsKey(PlantContract.EXTRA_NEXT_TRANSITION_AT)) {
+            // Nothing left to change (empty garden or every plant dead and fully grown)
+            alarmManager.cancel(pendingIntent);
+            return;
+        }
+
+        // The widgets don't need to change while the screen is off, so the alarm doesn't wake
+        // the device and is delivered the next time it wakes up
+        long transitionAt = result.getLong(PlantContract.EXTRA_NEXT_TRANSITION_AT);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC, transitionAt, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC, transitionAt, pendingIntent);
+        }
+    }
+
+    /**
+     * Cancels the transition alarm
+     *
+     * @param context The context
+     */
+    public static void cancel(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getTransitionPendingIntent(context));
+    }
+
+    private static PendingIntent getTransitionPendingIntent(Context context) {
+        // A broadcast rather than a service start, which API 26+ blocks while the app is in
+        // the background, as it usually is when a plant changes
+        Intent intent = new Intent(context, PlantWidgetProvider.class);
+        intent.setAction(PlantWidgetProvider.ACTION_REFRESH_ON_TRANSITION);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
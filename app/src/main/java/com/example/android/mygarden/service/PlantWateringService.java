@@ -3,16 +3,20 @@ package com.example.android.mygarden.service;
 import android.app.IntentService;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 
 import com.example.android.mygarden.PlantWidgetProvider;
 import com.example.android.mygarden.R;
+import com.example.android.mygarden.WidgetRenderCache;
 import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.utils.PlantLifecycle;
+import com.example.android.mygarden.utils.PlantSpecies;
 import com.example.android.mygarden.utils.PlantUtils;
 
 import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
@@ -28,8 +32,13 @@ import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
 public class PlantWateringService extends IntentService {
 
     public static final String ACTION_WATER_PLANTS = "com.example.android.mygarden.service.action.water_plants";
+    public static final String ACTION_WATER_GARDEN = "com.example.android.mygarden.service.action.water_garden";
     public static final String ACTION_UPDATE_PLANT_WIDGET = "com.example.android.mygarden.service.action.update_plant_widgets";
+    public static final String ACTION_ADD_PLANTS = "com.example.android.mygarden.service.action.add_plants";
     public static final String EXTRA_PLANT_ID = "com.example.andorid.mygarden.service.identifier.plant";
+    public static final String EXTRA_PLANT_IDS = "com.example.andorid.mygarden.service.identifier.plants";
+    public static final String EXTRA_PLANT_TYPE = "com.example.andorid.mygarden.service.identifier.plant_type";
+    public static final String EXTRA_PLANT_COUNT = "com.example.andorid.mygarden.service.identifier.plant_count";
 
     public PlantWateringService() {
         super("PlantWateringService");
@@ -49,13 +58,62 @@ public class PlantWateringService extends IntentService {
     }
 
     /**
-     * Starts this service to perform the update plant action
+     * Starts this service to water every plant in the garden that can be watered
+     *
+     * @param context - The context of the caller
+     */
+    public static void startActionWaterGarden(Context context) {
+        Intent intent = new Intent(context, PlantWateringService.class);
+        intent.setAction(ACTION_WATER_GARDEN);
+        context.startService(intent);
+    }
+
+    /**
+     * Starts this service to water the given plants, skipping those that can't be watered
+     *
+     * @param context  - The context of the caller
+     * @param plantIds - The IDs of the plants to water
+     */
+    public static void startActionWaterGarden(Context context, long[] plantIds) {
+        Intent intent = new Intent(context, PlantWateringService.class);
+        intent.setAction(ACTION_WATER_GARDEN);
+        intent.putExtra(EXTRA_PLANT_IDS, plantIds);
+        context.startService(intent);
+    }
+
+    /**
+     * Starts this service to plant new plants of the given type, so the caller doesn't wait
+     * for the write and can finish right away
+     *
+     * @param context   - The context of the caller
+     * @param plantType - The type of the new plants
+     * @param count     - The number of plants to add
+     */
+    public static void startActionAddPlants(Context context, int plantType, int count) {
+        Intent intent = new Intent(context, PlantWateringService.class);
+        intent.setAction(ACTION_ADD_PLANTS);
+        intent.putExtra(EXTRA_PLANT_TYPE, plantType);
+        intent.putExtra(EXTRA_PLANT_COUNT, count);
+        context.startService(intent);
+    }
+
+    /**
+     * Starts this service to perform the update plant action. The request is dropped if a
+     * refresh is already pending, as that refresh will pick up the latest data anyway.
      * @param context - The context of the caller
+     * @see WidgetRefreshScheduler
      */
     public static void startActionUpdatePlantWidgets(Context context) {
+        if (!WidgetRefreshScheduler.requestRefresh()) return;
+
         Intent intent = new Intent(context, PlantWateringService.class);
         intent.setAction(ACTION_UPDATE_PLANT_WIDGET);
-        context.startService(intent);
+        try {
+            context.startService(intent);
+        } catch (RuntimeException e) {
+            WidgetRefreshScheduler.cancelPendingRefresh();
+            throw e;
+        }
     }
 
     @Override
@@ -66,8 +124,27 @@ public class PlantWateringService extends IntentService {
             if (action == null) return;
 
             switch (action) {
-                case ACTION_WATER_PLANTS: handleActionWaterPlant(intent.getLongExtra(EXTRA_PLANT_ID, INVALID_PLANT_ID));
-                case ACTION_UPDATE_PLANT_WIDGET: handleActionUpdatePlants();
+                case ACTION_WATER_GARDEN:
+                    handleActionWaterGarden(intent.getLongArrayExtra(EXTRA_PLANT_IDS));
+                    break;
+                case ACTION_WATER_PLANTS:
+                    handleActionWaterPlant(intent.getLongExtra(EXTRA_PLANT_ID, INVALID_PLANT_ID));
+                    break;
+                case ACTION_UPDATE_PLANT_WIDGET:
+                    synchronized (WidgetRefreshScheduler.REFRESH_LOCK) {
+                        // Skipped if another refresh already ran since this one was requested
+                        if (!WidgetRefreshScheduler.beginQueuedRefresh()) return;
+                        try {
+                            handleActionUpdatePlants(this);
+                        } finally {
+                            WidgetRefreshScheduler.endRefresh();
+                        }
+                    }
+                    break;
+                case ACTION_ADD_PLANTS:
+                    handleActionAddPlants(intent.getIntExtra(EXTRA_PLANT_TYPE, 0),
+                            intent.getIntExtra(EXTRA_PLANT_COUNT, 1));
+                    break;
             }
         }
     }
@@ -77,35 +154,84 @@ public class PlantWateringService extends IntentService {
      */
     private void handleActionWaterPlant(long plantId) {
 
-        Uri PLANT_URI = ContentUris.withAppendedId(BASE_CONTENT_URI.buildUpon()
-                .appendPath(PATH_PLANTS).build(), plantId);
+        // Water the plant through the provider's precompiled statement, which
+        // also skips the plant if it's already dead
+        Bundle extras = new Bundle();
+        extras.putLong(PlantContract.EXTRA_PLANT_ID, plantId);
+        extras.putLong(PlantContract.EXTRA_WATERED_AT, System.currentTimeMillis());
+        getContentResolver().call(BASE_CONTENT_URI, PlantContract.METHOD_WATER_PLANT, null, extras);
+
+        // Updates the widget
+        refreshWidgets();
+    }
+
+    /**
+     * Waters every eligible plant (or only the given ones) in a single provider call
+     * and refreshes the widgets once
+     */
+    private void handleActionWaterGarden(long[] plantIds) {
+        Bundle extras = new Bundle();
+        extras.putLongArray(PlantContract.EXTRA_PLANT_IDS, plantIds);
+        extras.putLong(PlantContract.EXTRA_WATERED_AT, System.currentTimeMillis());
+        getContentResolver().call(BASE_CONTENT_URI, PlantContract.METHOD_WATER_PLANTS, null, extras);
+
+        refreshWidgets();
+    }
+
+    /**
+     * Plants the new plants in a single provider transaction, then refreshes the widgets once
+     * for the whole batch
+     */
+    private void handleActionAddPlants(int plantType, int count) {
+        if (count < 1) return;
 
-        // Gets the current time
         long timeNow = System.currentTimeMillis();
+        ContentValues[] plants = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(PlantContract.PlantEntry.COLUMN_PLANT_TYPE, plantType);
+            contentValues.put(PlantContract.PlantEntry.COLUMN_CREATION_TIME, timeNow);
+            contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+            plants[i] = contentValues;
+        }
+        getContentResolver().bulkInsert(PlantContract.PlantEntry.CONTENT_URI, plants);
 
-        // Stores the current time on a content values to be passed to the plant
-        // watering utility class
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+        refreshWidgets();
+    }
 
-        // Update the passed plant (by its ID)
-        getContentResolver().update(
-                PLANT_URI,
-                contentValues,
-                PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME+">?",
-                new String[]{String.valueOf(timeNow - PlantUtils.MAX_AGE_WITHOUT_WATER)});
+    /**
+     * Refreshes the widgets right away, as part of the action being handled.
+     * This also serves any refresh that is still waiting in the queue.
+     */
+    private void refreshWidgets() {
+        refreshWidgets(this);
+    }
 
-        // Updates the widget
-        startActionUpdatePlantWidgets(this);
+    /**
+     * Refreshes the widgets on the caller's thread, without starting this service, for callers
+     * that may run while the app is in the background (e.g. a broadcast receiver). Waits for a
+     * refresh running on another thread to finish first.
+     *
+     * @param context - The context of the caller
+     */
+    public static void refreshWidgets(Context context) {
+        synchronized (WidgetRefreshScheduler.REFRESH_LOCK) {
+            WidgetRefreshScheduler.beginRefresh();
+            try {
+                handleActionUpdatePlants(context);
+            } finally {
+                WidgetRefreshScheduler.endRefresh();
+            }
+        }
     }
 
-    private void handleActionUpdatePlants() {
+    private static void handleActionUpdatePlants(Context context) {
 
         Cursor cursor = null;
 
         try {
             // Query the plant with needs water the most
-            cursor = getContentResolver().query(
+            cursor = context.getContentResolver().query(
                     buildPlantsURI(),
                     null,
                     null,
@@ -125,23 +251,37 @@ public class PlantWateringService extends IntentService {
                 long createdAt = cursor.getLong(cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_CREATION_TIME));
                 int plantType = cursor.getInt(cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE));
                 plantId = cursor.getLong(cursor.getColumnIndex(PlantContract.PlantEntry._ID));
-                canWater = (now - wateredAt) > PlantUtils.MIN_AGE_BETWEEN_WATER
-                                && (now - wateredAt) < PlantUtils.MAX_AGE_WITHOUT_WATER;
+                canWater = PlantLifecycle.canWater(PlantSpecies.get(context), plantType, now - wateredAt);
 
                 imgRes = PlantUtils.getPlantImageRes(
-                        this,
+                        context,
                         now - createdAt,
                         now - wateredAt,
                         plantType
                 );
             }
 
-            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this, PlantWidgetProvider.class));
-            PlantWidgetProvider.updatePlantWidgets(this, appWidgetManager, imgRes, plantId, appWidgetIds, canWater);
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, PlantWidgetProvider.class));
+            int[] gridWidgetIds = PlantWidgetProvider.updatePlantWidgets(
+                    context, appWidgetManager, imgRes, plantId, appWidgetIds, canWater);
+
+            // Notifies the updates the GridView, only for the widgets displaying it and only if
+            // one of its cells would change
+            if (gridWidgetIds.length > 0) {
+                PlantSnapshot plants = PlantSnapshot.load(context.getContentResolver());
+                PlantLifecycle.Evaluation evaluation = PlantLifecycle.evaluate(PlantSpecies.get(context),
+                        plants.types, plants.createdAt, plants.wateredAt, plants.size,
+                        System.currentTimeMillis());
+                int[] changedGridIds = WidgetRenderCache.getChangedGrids(
+                        gridWidgetIds, WidgetRenderCache.digestGrid(plants, evaluation));
+                if (changedGridIds.length > 0) {
+                    appWidgetManager.notifyAppWidgetViewDataChanged(changedGridIds, R.id.widget_grid_view);
+                }
+            }
 
-            // Notifies the updates the GridView
-            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_grid_view);
+            // Refreshes again when the next plant changes
+            PlantTransitionScheduler.schedule(context, appWidgetIds.length > 0);
 
         } finally {
             if (cursor != null)
@@ -152,7 +292,7 @@ public class PlantWateringService extends IntentService {
     /**
      * Returns base plants URI
      */
-    private Uri buildPlantsURI() {
+    private static Uri buildPlantsURI() {
         return BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
     }
 
@@ -0,0 +1,127 @@
+package com.example.android.mygarden.service;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * Collapses widget refresh requests so that at most one refresh is running and at most one
+ * is pending at any time. A refresh re-reads the whole garden, so any number of requests made
+ * before it starts are all satisfied by that single refresh.
+ * <p>
+ * Refreshes run on the IntentService worker and on the thread of the transition broadcast, so
+ * each one holds {@link #REFRESH_LOCK} from begin to end to never overlap another.
+ */
+public final class WidgetRefreshScheduler {
+
+    // Held by a refresh from its begin to its end call
+    static final Object REFRESH_LOCK = new Object();
+
+    // A refresh has been requested and hasn't started yet
+    private static boolean sPending;
+    // A refresh is running
+    private static boolean sInFlight;
+
+    private static long sRequestedCount;
+    private static long sCollapsedCount;
+    private static long sPerformedCount;
+
+    private WidgetRefreshScheduler() {
+    }
+
+    /**
+     * Records a refresh request
+     *
+     * @return true if the caller must queue a refresh, false if the request was collapsed
+     * into a refresh that is already pending
+     */
+    static synchronized boolean requestRefresh() {
+        sRequestedCount++;
+        if (sPending) {
+            sCollapsedCount++;
+            return false;
+        }
+        sPending = true;
+        return true;
+    }
+
+    /**
+     * Called when a queued refresh is about to run
+     *
+     * @return false if the refresh is no longer needed because another refresh already started
+     * after it was requested
+     */
+    static synchronized boolean beginQueuedRefresh() {
+        if (!sPending) return false;
+        sPending = false;
+        sInFlight = true;
+        return true;
+    }
+
+    /**
+     * Called when a refresh runs directly as part of another action (e.g. watering).
+     * A pending request is satisfied by it, and its queued refresh will be skipped.
+     */
+    static synchronized void beginRefresh() {
+        if (sPending) {
+            sPending = false;
+            sCollapsedCount++;
+        }
+        sInFlight = true;
+    }
+
+    /**
+     * Called when a refresh has finished
+     */
+    static synchronized void endRefresh() {
+        sInFlight = false;
+        sPerformedCount++;
+    }
+
+    /**
+     * Called when a refresh couldn't be queued, so the next request queues a new one
+     */
+    static synchronized void cancelPendingRefresh() {
+        sPending = false;
+    }
+
+    /**
+     * @return The number of refreshes running or waiting to run (0, 1 or 2)
+     */
+    public static synchronized int getQueueDepth() {
+        return (sInFlight ? 1 : 0) + (sPending ? 1 : 0);
+    }
+
+    /**
+     * @return The number of refresh requests made since the process started
+     */
+    public static synchronized long getRequestedCount() {
+        return sRequestedCount;
+    }
+
+    /**
+     * @return The number of refresh requests that were served by another refresh
+     */
+    public static synchronized long getCollapsedCount() {
+        return sCollapsedCount;
+    }
+
+    /**
+     * @return The number of refreshes actually performed
+     */
+    public static synchronized long getPerformedCount() {
+        return sPerformedCount;
+    }
+}
@@ -16,21 +16,22 @@ package com.example.android.mygarden.ui;
 * limitations under the License.
 */
 
-import android.content.ContentValues;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import android.widget.ArrayAdapter;
 import android.widget.ImageView;
+import android.widget.Spinner;
 
 import com.example.android.mygarden.R;
-import com.example.android.mygarden.provider.PlantContract;
 import com.example.android.mygarden.service.PlantWateringService;
 
 public class AddPlantActivity extends AppCompatActivity {
     private RecyclerView mTypesRecyclerView;
     private PlantTypesAdapter mTypesAdapter;
+    private Spinner mCountSpinner;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,6 +46,17 @@ public class AddPlantActivity extends AppCompatActivity {
         );
         mTypesRecyclerView.setAdapter(mTypesAdapter);
 
+        // How many plants of the chosen type to plant at once
+        int[] batchSizes = getResources().getIntArray(R.array.plant_batch_sizes);
+        Integer[] counts = new Integer[batchSizes.length];
+        for (int i = 0; i < batchSizes.length; i++) {
+            counts[i] = batchSizes[i];
+        }
+        ArrayAdapter<Integer> countAdapter = new ArrayAdapter<>(
+                this, android.R.layout.simple_spinner_item, counts);
+        countAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        mCountSpinner = (Spinner) findViewById(R.id.plant_count_spinner);
+        mCountSpinner.setAdapter(countAdapter);
     }
 
     /**
@@ -53,20 +65,16 @@ public class AddPlantActivity extends AppCompatActivity {
      * @param view
      */
     public void onPlantTypeClick(View view) {
-        // When the chosen plant type is clicked, create a new plant and set the creation time and
-        // water time to now
+        // When the chosen plant type is clicked, create the new plants with their creation time
+        // and water time set to now
         // Extract the plant type from the tag
         ImageView imgView = (ImageView) view.findViewById(R.id.plant_type_image);
         int plantType = (int) imgView.getTag();
-        long timeNow = System.currentTimeMillis();
-        // Insert the new plant into DB
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(PlantContract.PlantEntry.COLUMN_PLANT_TYPE, plantType);
-        contentValues.put(PlantContract.PlantEntry.COLUMN_CREATION_TIME, timeNow);
-        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
-        getContentResolver().insert(PlantContract.PlantEntry.CONTENT_URI, contentValues);
-        PlantWateringService.startActionUpdatePlantWidgets(this);
-        // Close this activity
+        int count = (Integer) mCountSpinner.getSelectedItem();
+        // The plants are inserted in the background, in one transaction followed by a single
+        // widget refresh
+        PlantWateringService.startActionAddPlants(this, plantType, count);
+        // Close this activity without waiting for the write
         finish();
     }
 
@@ -17,32 +17,41 @@ package com.example.android.mygarden.ui;
 */
 
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
-import android.widget.ImageView;
 
 import com.example.android.mygarden.R;
-
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
-import static com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.utils.PlantLifecycle;
 
 public class MainActivity
         extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<PlantSnapshot> {
 
     private static final int GARDEN_LOADER_ID = 100;
+    // Plants loaded per page, and how close to the end of the list the next page is requested
+    private static final int GARDEN_PAGE_SIZE = 100;
+    private static final int LOAD_MORE_THRESHOLD = 20;
     private PlantListAdapter mAdapter;
 
     private RecyclerView mGardenRecyclerView;
+    private GridLayoutManager mLayoutManager;
+
+    // Refreshes the visible plants when the next of them changes, while the activity is resumed
+    private final Handler mHandler = new Handler();
+    private boolean mResumed;
+    private final Runnable mRefreshTick = new Runnable() {
+        @Override
+        public void run() {
+            refreshVisiblePlants();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,26 +60,105 @@ public class MainActivity
 
         // The main activity displays the garden as a grid layout recycler view
         mGardenRecyclerView = (RecyclerView) findViewById(R.id.plants_list_recycler_view);
-        mGardenRecyclerView.setLayoutManager(
-                new GridLayoutManager(this, 4)
-        );
-        mAdapter = new PlantListAdapter(this, null);
+        mLayoutManager = new GridLayoutManager(this, 4);
+        mGardenRecyclerView.setLayoutManager(mLayoutManager);
+        mAdapter = new PlantListAdapter(this);
         mGardenRecyclerView.setAdapter(mAdapter);
 
+        // New or changed plants may change sooner than the plants displayed so far
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                // The refresh itself rebinds plants, and already knows their next change
+                if (payload != PlantListAdapter.PAYLOAD_LIFECYCLE) scheduleRefresh();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                scheduleRefresh();
+            }
+        });
+
+        // Loads the next page of the garden as the user scrolls towards the end of the list
+        mGardenRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= mAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    Loader<PlantSnapshot> loader = getSupportLoaderManager().getLoader(GARDEN_LOADER_ID);
+                    if (loader != null) ((PlantPageLoader) loader).loadMore();
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Other plants are visible now
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) scheduleRefresh();
+            }
+        });
+
         getSupportLoaderManager().initLoader(GARDEN_LOADER_ID, null, this);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        Uri PLANT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
-        return new CursorLoader(this, PLANT_URI, null,
-                null, null, PlantEntry.COLUMN_CREATION_TIME);
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+        scheduleRefresh();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mResumed = false;
+        mHandler.removeCallbacks(mRefreshTick);
+    }
+
+    /**
+     * Refreshes the visible plants right after the current message, once per burst of requests
+     */
+    private void scheduleRefresh() {
+        if (!mResumed) return;
+        mHandler.removeCallbacks(mRefreshTick);
+        mHandler.post(mRefreshTick);
+    }
+
+    /**
+     * Rebinds the visible plants that changed state, then waits for the next one to change
+     */
+    private void refreshVisiblePlants() {
+        mHandler.removeCallbacks(mRefreshTick);
+        if (!mResumed) return;
+
+        long timeNow = System.currentTimeMillis();
+        long nextTransitionAt = mAdapter.refreshPlants(
+                mLayoutManager.findFirstVisibleItemPosition(),
+                mLayoutManager.findLastVisibleItemPosition(),
+                timeNow);
+        if (nextTransitionAt != PlantLifecycle.NO_TRANSITION) {
+            mHandler.postDelayed(mRefreshTick, Math.max(0, nextTransitionAt - timeNow));
+        }
+    }
+
+    @Override
+    public Loader<PlantSnapshot> onCreateLoader(int id, Bundle args) {
+        return new PlantPageLoader(this, GARDEN_PAGE_SIZE);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        cursor.moveToFirst();
-        mAdapter.swapCursor(cursor);
+    public void onLoadFinished(Loader<PlantSnapshot> loader, PlantSnapshot plants) {
+        mAdapter.swapPlants(plants);
     }
 
     @Override
@@ -79,8 +167,10 @@ public class MainActivity
     }
 
     public void onPlantClick(View view) {
-        ImageView imgView = (ImageView) view.findViewById(R.id.plant_list_item_image);
-        long plantId = (long) imgView.getTag();
+        // The adapter has stable IDs, the item ID is the plant ID
+        RecyclerView.ViewHolder holder = mGardenRecyclerView.findContainingViewHolder(view);
+        if (holder == null) return;
+        long plantId = holder.getItemId();
         Intent intent = new Intent(getBaseContext(), PlantDetailActivity.class);
         intent.putExtra(PlantDetailActivity.EXTRA_PLANT_ID, plantId);
         startActivity(intent);
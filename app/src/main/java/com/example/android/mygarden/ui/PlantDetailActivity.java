@@ -17,10 +17,12 @@ package com.example.android.mygarden.ui;
 */
 
 import android.content.ContentUris;
-import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -28,12 +30,18 @@ import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.android.mygarden.R;
 import com.example.android.mygarden.provider.PlantContract;
 import com.example.android.mygarden.service.PlantWateringService;
+import com.example.android.mygarden.utils.PlantImageCache;
+import com.example.android.mygarden.utils.PlantLifecycle;
+import com.example.android.mygarden.utils.PlantSpecies;
 import com.example.android.mygarden.utils.PlantUtils;
 
+import java.lang.ref.WeakReference;
+
 import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
 import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
 
@@ -44,37 +52,92 @@ public class PlantDetailActivity extends AppCompatActivity
     public static final String EXTRA_PLANT_ID = "com.example.android.mygarden.extra.PLANT_ID";
     long mPlantId;
 
+    // The plant as last loaded, kept to refresh the screen as it ages without querying it again
+    private boolean mPlantLoaded;
+    private int mPlantType;
+    private long mCreatedAt;
+    private long mWateredAt;
+    // Time of a watering shown before the provider confirmed it, 0 if none is in flight
+    private long mPendingWateredAt;
+
+    // Refreshes the screen when what it shows next changes, while the activity is resumed
+    private final Handler mHandler = new Handler();
+    private boolean mResumed;
+    private final Runnable mRefreshTick = new Runnable() {
+        @Override
+        public void run() {
+            refreshPlant();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_plant_detail);
         mPlantId = getIntent().getLongExtra(EXTRA_PLANT_ID, PlantContract.INVALID_PLANT_ID);
+        ((TextView) findViewById(R.id.plant_detail_name)).setText(String.valueOf(mPlantId));
         // This activity displays single plant information that is loaded using a cursor loader
         getSupportLoaderManager().initLoader(SINGLE_LOADER_ID, null, this);
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+        refreshPlant();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mResumed = false;
+        mHandler.removeCallbacks(mRefreshTick);
+    }
+
     public void onBackButtonClick(View view) {
         finish();
     }
 
+    /**
+     * Waters the plant optimistically: the screen shows it watered right away while the provider
+     * writes it in the background, and goes back to the previous state if the provider rejects
+     * the watering because the plant died in the meantime
+     */
     public void onWaterButtonClick(View view) {
         //check if already dead then can't water
-        Uri SINGLE_PLANT_URI = ContentUris.withAppendedId(
-                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(), mPlantId);
-        Cursor cursor = getContentResolver().query(SINGLE_PLANT_URI, null, null, null, null);
-        if (cursor == null || cursor.getCount() < 1) return; //can't find this plant!
-        cursor.moveToFirst();
-        long lastWatered = cursor.getLong(cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME));
+        if (!mPlantLoaded) return; //can't find this plant!
         long timeNow = System.currentTimeMillis();
-        if ((timeNow - lastWatered) > PlantUtils.MAX_AGE_WITHOUT_WATER)
+        if (PlantLifecycle.isDead(PlantSpecies.get(this), mPlantType, timeNow - getWateredAt()))
             return; // plant already dead
 
-        ContentValues contentValues = new ContentValues();
-        // Update the watered timestamp
-        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
-        getContentResolver().update(SINGLE_PLANT_URI, contentValues, null, null);
-        PlantWateringService.startActionUpdatePlantWidgets(this);
-        cursor.close();
+        mPendingWateredAt = timeNow;
+        refreshPlant();
+        new WaterPlantTask(this, mPlantId, timeNow).execute();
+    }
+
+    /**
+     * Called once the provider has handled a watering started by onWaterButtonClick
+     *
+     * @param wateredAt The time the plant was watered at
+     * @param watered   Whether the provider watered the plant
+     */
+    private void onPlantWatered(long wateredAt, boolean watered) {
+        // A later watering supersedes this one
+        if (wateredAt != mPendingWateredAt) return;
+        mPendingWateredAt = 0;
+        if (watered) {
+            mWateredAt = Math.max(mWateredAt, wateredAt);
+        } else {
+            Toast.makeText(this, R.string.plant_not_watered, Toast.LENGTH_SHORT).show();
+        }
+        refreshPlant();
+    }
+
+    /**
+     * @return The last watering time shown, including a watering not yet confirmed
+     */
+    private long getWateredAt() {
+        return Math.max(mWateredAt, mPendingWateredAt);
     }
 
     @Override
@@ -93,15 +156,31 @@ public class PlantDetailActivity extends AppCompatActivity
         int waterTimeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME);
         int planTypeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE);
 
-        int plantType = cursor.getInt(planTypeIndex);
-        long createdAt = cursor.getLong(createTimeIndex);
-        long wateredAt = cursor.getLong(waterTimeIndex);
-        long timeNow = System.currentTimeMillis();
+        mPlantType = cursor.getInt(planTypeIndex);
+        mCreatedAt = cursor.getLong(createTimeIndex);
+        mWateredAt = cursor.getLong(waterTimeIndex);
+        mPlantLoaded = true;
+        refreshPlant();
+    }
 
-        int plantImgRes = PlantUtils.getPlantImageRes(this, timeNow - createdAt, timeNow - wateredAt, plantType);
+    /**
+     * Shows the plant as it is now, then waits for the next time any of it changes: its image,
+     * its water level or one of the displayed ages
+     */
+    private void refreshPlant() {
+        mHandler.removeCallbacks(mRefreshTick);
+        if (!mPlantLoaded) return;
 
-        ((ImageView) findViewById(R.id.plant_detail_image)).setImageResource(plantImgRes);
-        ((TextView) findViewById(R.id.plant_detail_name)).setText(String.valueOf(mPlantId));
+        int plantType = mPlantType;
+        long createdAt = mCreatedAt;
+        long wateredAt = getWateredAt();
+        long timeNow = System.currentTimeMillis();
+        PlantSpecies species = PlantSpecies.get(this);
+
+        PlantImageCache.get(this).loadPlantInto((ImageView) findViewById(R.id.plant_detail_image),
+                plantType,
+                PlantLifecycle.getStatus(species, plantType, timeNow - wateredAt),
+                PlantLifecycle.getSize(species, plantType, timeNow - createdAt));
         ((TextView) findViewById(R.id.plant_age_number)).setText(
                 String.valueOf(PlantUtils.getDisplayAgeInt(timeNow - createdAt))
         );
@@ -114,8 +193,18 @@ public class PlantDetailActivity extends AppCompatActivity
         ((TextView) findViewById(R.id.last_watered_unit)).setText(
                 PlantUtils.getDisplayAgeUnit(this, timeNow - wateredAt)
         );
-        int waterPercent = 100 - ((int) (100 * (timeNow - wateredAt) / PlantUtils.MAX_AGE_WITHOUT_WATER));
+        int waterPercent = PlantLifecycle.getWaterPercent(species, plantType, timeNow - wateredAt);
         ((WaterLevelView) findViewById(R.id.water_level)).setValue(waterPercent);
+
+        if (!mResumed) return;
+        long nextChangeAt = Math.min(
+                PlantLifecycle.getNextTransitionAt(species, plantType, createdAt, wateredAt, timeNow),
+                PlantLifecycle.getNextWaterPercentChangeAt(species, plantType, wateredAt, timeNow));
+        nextChangeAt = Math.min(nextChangeAt,
+                timeNow + PlantUtils.getDisplayAgeChangeDelay(timeNow - createdAt));
+        nextChangeAt = Math.min(nextChangeAt,
+                timeNow + PlantUtils.getDisplayAgeChangeDelay(timeNow - wateredAt));
+        mHandler.postDelayed(mRefreshTick, nextChangeAt - timeNow);
     }
 
     @Override
@@ -123,6 +212,43 @@ public class PlantDetailActivity extends AppCompatActivity
 
     }
 
+    /**
+     * Waters a plant through the provider off the main thread. The provider only waters the
+     * plant if it's still alive, in the same statement as the write.
+     */
+    private static class WaterPlantTask extends AsyncTask<Void, Void, Boolean> {
+
+        private final WeakReference<PlantDetailActivity> mActivity;
+        private final Context mContext;
+        private final long mPlantId;
+        private final long mWateredAt;
+
+        WaterPlantTask(PlantDetailActivity activity, long plantId, long wateredAt) {
+            mActivity = new WeakReference<>(activity);
+            mContext = activity.getApplicationContext();
+            mPlantId = plantId;
+            mWateredAt = wateredAt;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... params) {
+            Bundle extras = new Bundle();
+            extras.putLong(PlantContract.EXTRA_PLANT_ID, mPlantId);
+            extras.putLong(PlantContract.EXTRA_WATERED_AT, mWateredAt);
+            Bundle result = mContext.getContentResolver().call(
+                    BASE_CONTENT_URI, PlantContract.METHOD_WATER_PLANT, null, extras);
+            boolean watered = result != null && result.getInt(PlantContract.EXTRA_ROWS_UPDATED) > 0;
+            if (watered) PlantWateringService.startActionUpdatePlantWidgets(mContext);
+            return watered;
+        }
+
+        @Override
+        protected void onPostExecute(Boolean watered) {
+            PlantDetailActivity activity = mActivity.get();
+            if (activity != null && !activity.isFinishing()) activity.onPlantWatered(mWateredAt, watered);
+        }
+    }
+
     public void onCutButtonClick(View view) {
         Uri SINGLE_PLANT_URI = ContentUris.withAppendedId(
                 BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(), mPlantId);
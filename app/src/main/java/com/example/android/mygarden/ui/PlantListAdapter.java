@@ -17,7 +17,9 @@ package com.example.android.mygarden.ui;
 */
 
 import android.content.Context;
-import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -26,22 +28,49 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.mygarden.R;
-import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantSnapshot;
+import com.example.android.mygarden.utils.PlantImageCache;
+import com.example.android.mygarden.utils.PlantLifecycle;
+import com.example.android.mygarden.utils.PlantSpecies;
 import com.example.android.mygarden.utils.PlantUtils;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.PlantViewHolder> {
 
+    // Computes the diffs between garden snapshots off the main thread, one at a time
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    // Payload of the changes made by refreshPlants, so observers can tell them from data changes
+    static final Object PAYLOAD_LIFECYCLE = new Object();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
     private Context mContext;
-    private Cursor mCursor;
+    private RecyclerView mRecyclerView;
+    // The plants currently displayed, only replaced on the main thread
+    private PlantSnapshot mPlants;
+    // Incremented by each swap, so a diff finishing after a newer swap is dropped
+    private int mSwapGeneration;
+    // The time all the cells bound in the current frame are drawn at, 0 outside of a frame
+    private long mFrameTime;
+    private final Runnable mEndFrame = new Runnable() {
+        @Override
+        public void run() {
+            mFrameTime = 0;
+        }
+    };
 
     /**
-     * Constructor using the context and the db cursor
+     * Constructor using the context, the list starts empty until swapPlants() is called
      *
      * @param context the calling context/activity
      */
-    public PlantListAdapter(Context context, Cursor cursor) {
+    public PlantListAdapter(Context context) {
         this.mContext = context;
-        this.mCursor = cursor;
+        this.mPlants = PlantSnapshot.EMPTY;
+        setHasStableIds(true);
     }
 
     /**
@@ -62,60 +91,216 @@ public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.Plan
     @Override
     public void onBindViewHolder(PlantViewHolder holder, int position) {
 
-        mCursor.moveToPosition(position);
-        int idIndex = mCursor.getColumnIndex(PlantEntry._ID);
-        int createTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
-        int waterTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
-        int plantTypeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+        long plantId = mPlants.ids[position];
+        int plantType = mPlants.types[position];
+        long createdAt = mPlants.createdAt[position];
+        long wateredAt = mPlants.wateredAt[position];
+        long timeNow = getFrameTime();
 
-        long plantId = mCursor.getLong(idIndex);
-        int plantType = mCursor.getInt(plantTypeIndex);
-        long createdAt = mCursor.getLong(createTimeIndex);
-        long wateredAt = mCursor.getLong(waterTimeIndex);
-        long timeNow = System.currentTimeMillis();
+        PlantSpecies species = PlantSpecies.get(mContext);
+        int status = PlantLifecycle.getStatus(species, plantType, timeNow - wateredAt);
+        int size = PlantLifecycle.getSize(species, plantType, timeNow - createdAt);
+        int imgRes = PlantUtils.getPlantImgRes(mContext, plantType, status, size);
 
-        int imgRes = PlantUtils.getPlantImageRes(mContext, timeNow - createdAt, timeNow - wateredAt, plantType);
+        holder.bind(plantId, imgRes, plantType, status, size);
+    }
 
-        holder.plantImageView.setImageResource(imgRes);
-        holder.plantNameView.setText(String.valueOf(plantId));
-        holder.plantImageView.setTag(plantId);
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
     }
 
-    public void swapCursor(Cursor newCursor) {
-        if (mCursor != null) {
-            mCursor.close();
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = null;
+    }
+
+    /**
+     * Rebinds the plants of the range whose displayed image is out of date, from the rows already
+     * loaded, so the garden stays current without querying the provider again
+     *
+     * @param first The position of the first plant to refresh
+     * @param last  The position of the last plant to refresh
+     * @param now   The current time
+     * @return The next time one of these plants changes, or PlantLifecycle.NO_TRANSITION
+     */
+    public long refreshPlants(int first, int last, long now) {
+        long nextTransitionAt = PlantLifecycle.NO_TRANSITION;
+        if (mRecyclerView == null || first == RecyclerView.NO_POSITION) return nextTransitionAt;
+
+        PlantSpecies species = PlantSpecies.get(mContext);
+        last = Math.min(last, mPlants.size - 1);
+        for (int position = first; position <= last; position++) {
+            int plantType = mPlants.types[position];
+            long createdAt = mPlants.createdAt[position];
+            long wateredAt = mPlants.wateredAt[position];
+
+            PlantViewHolder holder = (PlantViewHolder) mRecyclerView.findViewHolderForAdapterPosition(position);
+            if (holder != null && holder.mBoundImgRes !=
+                    PlantUtils.getPlantImageRes(mContext, now - createdAt, now - wateredAt, plantType)) {
+                notifyItemChanged(position, PAYLOAD_LIFECYCLE);
+            }
+            nextTransitionAt = Math.min(nextTransitionAt,
+                    PlantLifecycle.getNextTransitionAt(species, plantType, createdAt, wateredAt, now));
         }
-        mCursor = newCursor;
-        if (mCursor != null) {
-            // Force the RecyclerView to refresh
-            this.notifyDataSetChanged();
+        return nextTransitionAt;
+    }
+
+    /**
+     * Returns the time the current frame is drawn at, so every cell bound in the same layout
+     * pass shows the plants at the same instant
+     */
+    private long getFrameTime() {
+        if (mFrameTime == 0) {
+            mFrameTime = System.currentTimeMillis();
+            // Runs once the binds of the current layout pass are done
+            mMainHandler.post(mEndFrame);
         }
+        return mFrameTime;
     }
 
     /**
-     * Returns the number of items in the cursor
+     * Displays a new snapshot of the garden, as copied by the loader in the background. The
+     * differences with the plants displayed so far are computed in the background too, keyed by
+     * plant ID, and only the inserted, removed and changed plants are then updated in the
+     * RecyclerView.
      *
-     * @return Number of items in the cursor, or 0 if null
+     * @param plants The plants to display, or null to clear the list
+     */
+    public void swapPlants(PlantSnapshot plants) {
+        final PlantSnapshot oldPlants = mPlants;
+        final PlantSnapshot newPlants = plants != null ? plants : PlantSnapshot.EMPTY;
+        final int generation = ++mSwapGeneration;
+
+        // Nothing to diff when either side is empty
+        if (oldPlants.size == 0 || newPlants.size == 0) {
+            mPlants = newPlants;
+            if (oldPlants.size > 0) notifyItemRangeRemoved(0, oldPlants.size);
+            if (newPlants.size > 0) notifyItemRangeInserted(0, newPlants.size);
+            return;
+        }
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Both snapshots are sorted by creation time, so plants never move
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                        new PlantDiffCallback(oldPlants, newPlants), false);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSwapGeneration) return;
+                        mPlants = newPlants;
+                        diff.dispatchUpdatesTo(PlantListAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the number of plants displayed
+     *
+     * @return Number of plants displayed
      */
     @Override
     public int getItemCount() {
-        if (mCursor == null) return 0;
-        return mCursor.getCount();
+        return mPlants.size;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mPlants.ids[position];
+    }
+
+    /**
+     * Compares two garden snapshots: plants are the same if they have the same ID, and look the
+     * same if their type and timestamps didn't change
+     */
+    private static class PlantDiffCallback extends DiffUtil.Callback {
+
+        private final PlantSnapshot mOldPlants;
+        private final PlantSnapshot mNewPlants;
+
+        PlantDiffCallback(PlantSnapshot oldPlants, PlantSnapshot newPlants) {
+            mOldPlants = oldPlants;
+            mNewPlants = newPlants;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldPlants.size;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewPlants.size;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mOldPlants.ids[oldPosition] == mNewPlants.ids[newPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return mOldPlants.types[oldPosition] == mNewPlants.types[newPosition]
+                    && mOldPlants.createdAt[oldPosition] == mNewPlants.createdAt[newPosition]
+                    && mOldPlants.wateredAt[oldPosition] == mNewPlants.wateredAt[newPosition];
+        }
     }
 
     /**
      * PlantViewHolder class for the recycler view item
      */
-    class PlantViewHolder extends RecyclerView.ViewHolder {
+    class PlantViewHolder extends RecyclerView.ViewHolder
+            implements PlantImageCache.OnImageShownListener {
 
         ImageView plantImageView;
         TextView plantNameView;
 
+        // What the views currently show, so rebinding the same state doesn't touch them
+        private long mBoundPlantId = PlantContract.INVALID_PLANT_ID;
+        private int mBoundImgRes;
+        // The image being loaded, only bound once it's shown so a failed decode is retried
+        private int mRequestedImgRes;
+        // Holds the digits of the plant ID, long enough for any long
+        private final char[] mPlantIdChars = new char[20];
+
         public PlantViewHolder(View itemView) {
             super(itemView);
             plantImageView = (ImageView) itemView.findViewById(R.id.plant_list_item_image);
             plantNameView = (TextView) itemView.findViewById(R.id.plant_list_item_name);
         }
 
+        /**
+         * Shows the plant, without allocating in the steady state. The image resource identifies
+         * what is shown, while the image itself is drawn from the plant type's atlas.
+         */
+        void bind(long plantId, int imgRes, int plantType, int status, int size) {
+            if (imgRes != mBoundImgRes) {
+                mBoundImgRes = 0;
+                mRequestedImgRes = imgRes;
+                PlantImageCache.get(mContext).loadPlantInto(plantImageView, plantType, status, size, this);
+            }
+            if (plantId != mBoundPlantId) {
+                mBoundPlantId = plantId;
+                // Writes the ID into the reused buffer rather than creating a String
+                int start = mPlantIdChars.length;
+                long value = plantId;
+                do {
+                    mPlantIdChars[--start] = (char) ('0' + Math.abs(value % 10));
+                    value /= 10;
+                } while (value != 0);
+                if (plantId < 0) mPlantIdChars[--start] = '-';
+                plantNameView.setText(mPlantIdChars, start, mPlantIdChars.length - start);
+            }
+        }
+
+        @Override
+        public void onImageShown(ImageView view) {
+            mBoundImgRes = mRequestedImgRes;
+        }
+
     }
 }
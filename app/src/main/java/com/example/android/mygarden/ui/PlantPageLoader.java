@@ -0,0 +1,188 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantSnapshot;
+
+/**
+ * Loads the garden one keyset page at a time, ordered by creation time.
+ * Only the pages the user has scrolled to are queried, so memory and load time depend on
+ * how far the list has been scrolled rather than on the size of the garden.
+ * The plants are delivered as a snapshot copied in the background, so the main thread never
+ * walks a cursor, and every page's cursor is closed once copied.
+ * <p>
+ * Loading more only queries the next page and appends it to the plants already loaded.
+ * A change to the plants reloads as many plants as were loaded, since any of them may have
+ * changed. Loading more is queued while any load is running, so it never replaces a reload
+ * with an append onto stale plants.
+ */
+public class PlantPageLoader extends AsyncTaskLoader<PlantSnapshot> {
+
+    private final int mPageSize;
+    // Reloads the garden when the provider notifies a change to the plants
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private boolean mObserverRegistered;
+    // Whether the garden goes on after the plants delivered last, only set when they're delivered
+    private boolean mHasMore = true;
+    // Set by loadMore() so the next load appends a page instead of reloading the garden
+    private volatile boolean mAppendPage;
+    // A load is running, or waiting for a cancelled one to finish
+    private boolean mLoading;
+    // Whether the running load appends a page, and whether loadMore() was called during a load
+    private boolean mLoadingMore;
+    private boolean mLoadMoreQueued;
+    // The plants delivered last, the base the next page is appended to
+    private volatile PlantSnapshot mPlants;
+    // The last plants loaded in the background and whether the garden goes on after them, only
+    // published by deliverResult() so a cancelled load can't change mHasMore
+    private volatile PlantSnapshot mLoadedPlants;
+    private volatile boolean mLoadedHasMore;
+
+    /**
+     * @param context  The context
+     * @param pageSize The number of plants loaded per page
+     */
+    public PlantPageLoader(Context context, int pageSize) {
+        super(context);
+        mPageSize = pageSize;
+    }
+
+    @Override
+    public PlantSnapshot loadInBackground() {
+        PlantSnapshot loaded = mPlants;
+        boolean appendPage = mAppendPage;
+        mAppendPage = false;
+
+        PlantSnapshot base;
+        int limit;
+        if (appendPage && loaded != null) {
+            base = loaded;
+            limit = mPageSize;
+        } else {
+            // Reloads what was loaded, and at least the first page
+            base = PlantSnapshot.EMPTY;
+            limit = Math.max(mPageSize, loaded != null ? loaded.size : 0);
+        }
+        PlantSnapshot result = PlantSnapshot.append(
+                getContext().getContentResolver(), base, limit, mPageSize);
+
+        // A short read means the end of the garden was reached
+        mLoadedHasMore = result.size - base.size == limit;
+        mLoadedPlants = result;
+        return result;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            // Some single plant changes are notified on their own URI, under the plants directory
+            getContext().getContentResolver().registerContentObserver(
+                    PlantEntry.CONTENT_URI, true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mPlants != null) deliverResult(mPlants);
+        if (takeContentChanged() || mPlants == null) {
+            // A reload, which a queued page waits for
+            mAppendPage = false;
+            forceLoad();
+        } else if (mLoadMoreQueued) {
+            mLoadMoreQueued = false;
+            loadMore();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+        // Nothing is loading anymore, an append cut short is loaded again once started
+        if (mLoadingMore) mLoadMoreQueued = true;
+        mLoading = false;
+        mLoadingMore = false;
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mLoading = true;
+    }
+
+    @Override
+    public void onContentChanged() {
+        // Any plant loaded so far may have changed, a pending append would miss it. A running
+        // append is cancelled by the reload, so its page is loaded again once the reload is done.
+        if (mLoadingMore) mLoadMoreQueued = true;
+        mLoadingMore = false;
+        mAppendPage = false;
+        super.onContentChanged();
+    }
+
+    @Override
+    public void deliverResult(PlantSnapshot plants) {
+        // A load just finished, rather than onStartLoading() delivering the plants again
+        boolean loaded = plants == mLoadedPlants;
+        if (loaded) {
+            mLoading = false;
+            mLoadingMore = false;
+            mHasMore = mLoadedHasMore;
+            mLoadedPlants = null;
+        }
+        if (isReset()) return;
+        mPlants = plants;
+        if (!isStarted()) return;
+        super.deliverResult(plants);
+
+        if (loaded && mLoadMoreQueued) {
+            mLoadMoreQueued = false;
+            loadMore();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mPlants = null;
+        mLoadedPlants = null;
+        mHasMore = true;
+        mLoading = false;
+        mLoadingMore = false;
+        mLoadMoreQueued = false;
+    }
+
+    /**
+     * Loads the page that follows the plants already loaded, unless the last page was the end of
+     * the garden. While a load is running the page is only loaded once it's delivered.
+     */
+    public void loadMore() {
+        if (!isStarted() || !mHasMore || mPlants == null) return;
+        if (mLoading) {
+            mLoadMoreQueued = true;
+            return;
+        }
+        mLoadingMore = true;
+        mAppendPage = true;
+        // Not this class' onContentChanged(), which would turn the append into a reload
+        super.onContentChanged();
+    }
+}
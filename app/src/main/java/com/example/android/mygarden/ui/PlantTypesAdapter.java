@@ -27,6 +27,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.mygarden.R;
+import com.example.android.mygarden.utils.PlantImageCache;
 import com.example.android.mygarden.utils.PlantUtils;
 
 public class PlantTypesAdapter extends RecyclerView.Adapter<PlantTypesAdapter.PlantViewHolder> {
@@ -62,11 +63,10 @@ public class PlantTypesAdapter extends RecyclerView.Adapter<PlantTypesAdapter.Pl
 
     @Override
     public void onBindViewHolder(PlantViewHolder holder, int position) {
-        int imgRes = PlantUtils.getPlantImgRes(
-                mContext, position,
-                PlantUtils.PlantStatus.ALIVE,
-                PlantUtils.PlantSize.FULLY_GROWN);
-        holder.plantImageView.setImageResource(imgRes);
+        PlantImageCache.get(mContext).loadPlantInto(
+                holder.plantImageView, position,
+                PlantUtils.PlantStatus.ALIVE.ordinal(),
+                PlantUtils.PlantSize.FULLY_GROWN.ordinal());
         holder.plantTypeText.setText(PlantUtils.getPlantTypeName(mContext, position));
         holder.plantImageView.setTag(position);
     }
@@ -0,0 +1,91 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draws one region of a shared atlas bitmap, sized like the original image it was packed from.
+ * The region can be changed, so a view keeps a single instance whichever image it shows.
+ */
+class AtlasRegionDrawable extends Drawable {
+
+    private Bitmap mAtlas;
+    private final Rect mRegion = new Rect();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int mIntrinsicWidth;
+    private int mIntrinsicHeight;
+
+    /**
+     * Draws another region, of the same or another atlas
+     *
+     * @param atlas           The decoded atlas
+     * @param left            The left of the region to draw, in pixels of the decoded atlas
+     * @param top             The top of the region
+     * @param right           The right of the region
+     * @param bottom          The bottom of the region
+     * @param intrinsicWidth  The width (in pixels) of the original image on this screen
+     * @param intrinsicHeight The height (in pixels) of the original image on this screen
+     */
+    void setRegion(Bitmap atlas, int left, int top, int right, int bottom,
+                   int intrinsicWidth, int intrinsicHeight) {
+        mAtlas = atlas;
+        mRegion.set(left, top, right, bottom);
+        mIntrinsicWidth = intrinsicWidth;
+        mIntrinsicHeight = intrinsicHeight;
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mAtlas == null) return;
+        canvas.drawBitmap(mAtlas, mRegion, getBounds(), mPaint);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicHeight;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Rect;
+
+import com.example.android.mygarden.R;
+
+/**
+ * Index of the plant atlases generated by the packPlantAtlases build task: one image per plant
+ * type holding all its status and size images, and the region of each of them in the atlas.
+ * Atlas pixels are at the density of the images in res/drawable (mdpi).
+ */
+public final class PlantAtlas {
+
+    private static final int STATUS_COUNT = PlantUtils.PlantStatus.values().length;
+    private static final int SIZE_COUNT = PlantUtils.PlantSize.values().length;
+
+    private static volatile PlantAtlas sInstance;
+
+    // Atlas resource of each type, and left, top, right, bottom of each region indexed by
+    // [type][status][size] flattened
+    private final int[] mAtlasRes;
+    private final int[] mRegions;
+
+    private PlantAtlas(int[] atlasRes, int[] regions) {
+        mAtlasRes = atlasRes;
+        mRegions = regions;
+    }
+
+    /**
+     * Returns the atlas index, loading it from the resources on first use
+     *
+     * @param context The context
+     * @return The plant atlas index
+     */
+    public static PlantAtlas get(Context context) {
+        PlantAtlas atlas = sInstance;
+        if (atlas == null) {
+            synchronized (PlantAtlas.class) {
+                atlas = sInstance;
+                if (atlas == null) {
+                    atlas = load(context.getResources());
+                    sInstance = atlas;
+                }
+            }
+        }
+        return atlas;
+    }
+
+    private static PlantAtlas load(Resources res) {
+        TypedArray atlases = res.obtainTypedArray(R.array.plant_atlases);
+        try {
+            int[] atlasRes = new int[atlases.length()];
+            for (int type = 0; type < atlasRes.length; type++) {
+                atlasRes[type] = atlases.getResourceId(type, 0);
+            }
+            return new PlantAtlas(atlasRes, res.getIntArray(R.array.plant_atlas_regions));
+        } finally {
+            atlases.recycle();
+        }
+    }
+
+    /**
+     * @param type The plant type
+     * @return The atlas image resource of the type, or 0 if it has none
+     */
+    public int getAtlasRes(int type) {
+        return type >= 0 && type < mAtlasRes.length ? mAtlasRes[type] : 0;
+    }
+
+    /**
+     * Finds the region of a plant image in its type's atlas
+     *
+     * @param type      The plant type
+     * @param status    The PlantStatus ordinal
+     * @param size      The PlantSize ordinal, or PlantLifecycle.SIZE_EMPTY_POT
+     * @param outRegion Receives the region, in atlas pixels
+     * @return Whether the image is in an atlas; the empty pot and unknown types aren't
+     */
+    public boolean getRegion(int type, int status, int size, Rect outRegion) {
+        if (getAtlasRes(type) == 0 || status < 0 || status >= STATUS_COUNT
+                || size < 0 || size >= SIZE_COUNT) {
+            return false;
+        }
+        int index = ((type * STATUS_COUNT + status) * SIZE_COUNT + size) * 4;
+        if (index + 3 >= mRegions.length) return false;
+        outRegion.set(mRegions[index], mRegions[index + 1], mRegions[index + 2], mRegions[index + 3]);
+        return true;
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LongSparseArray;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.example.android.mygarden.R;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Memory-bounded LRU cache of plant images, keyed by resource ID and target size. Images are
+ * decoded in the background at the size they are displayed instead of being scaled up to the
+ * screen density, and a cache hit neither decodes nor allocates.
+ * <p>
+ * Plant images are drawn from their type's atlas (see PlantAtlas), so all the images of a type
+ * share a single decoded bitmap.
+ * <p>
+ * Must be used from the main thread, only the decoding happens on another thread.
+ */
+public final class PlantImageCache {
+
+    /**
+     * Notified on the main thread once the requested image is shown, right away for a cached
+     * image. Never notified if the image couldn't be decoded.
+     */
+    public interface OnImageShownListener {
+        /**
+         * @param view The view now showing the image
+         */
+        void onImageShown(ImageView view);
+    }
+
+    private static volatile PlantImageCache sInstance;
+
+    private final Resources mResources;
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mDecodeExecutor = Executors.newSingleThreadExecutor();
+    private final long mMaxBytes;
+
+    private final LongSparseArray<Entry> mEntries = new LongSparseArray<>();
+    // Views waiting for each image being decoded, so an image is only decoded once at a time
+    private final LongSparseArray<ArrayList<ImageView>> mPendingViews = new LongSparseArray<>();
+    private long mBytes;
+    private long mAccessCount;
+    // Reused to look up atlas regions
+    private final Rect mRegion = new Rect();
+
+    private PlantImageCache(Context context, long maxBytes) {
+        mContext = context;
+        mResources = context.getResources();
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache, creating it on first use with an eighth of the heap
+     *
+     * @param context The context
+     * @return The image cache of the process
+     */
+    public static PlantImageCache get(Context context) {
+        PlantImageCache cache = sInstance;
+        if (cache == null) {
+            synchronized (PlantImageCache.class) {
+                cache = sInstance;
+                if (cache == null) {
+                    cache = new PlantImageCache(context.getApplicationContext(),
+                            Runtime.getRuntime().maxMemory() / 8);
+                    sInstance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Shows a plant image in the view, drawn from its type's atlas. The empty pot, and types
+     * without an atlas, are loaded as standalone images.
+     *
+     * @param view   The view to show the image in
+     * @param type   The plant type
+     * @param status The PlantStatus ordinal
+     * @param size   The PlantSize ordinal, or PlantLifecycle.SIZE_EMPTY_POT
+     */
+    public void loadPlantInto(ImageView view, int type, int status, int size) {
+        loadPlantInto(view, type, status, size, null);
+    }
+
+    /**
+     * Shows a plant image in the view, like {@link #loadPlantInto(ImageView, int, int, int)},
+     * notifying the listener once the image is shown
+     *
+     * @param listener The listener, or null
+     */
+    public void loadPlantInto(ImageView view, int type, int status, int size,
+                              OnImageShownListener listener) {
+        PlantAtlas atlas = PlantAtlas.get(mContext);
+        if (!atlas.getRegion(type, status, size, mRegion)) {
+            loadInto(view, PlantUtils.getPlantImgRes(mContext, type, status, size), listener);
+            return;
+        }
+
+        // Subsamples the whole atlas as the image alone would be, the region scaling with it
+        int atlasRes = atlas.getAtlasRes(type);
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int sampleSize = 1;
+        if (params != null && params.width > 0 && params.height > 0) {
+            sampleSize = getSampleSize(mRegion.width(), mRegion.height(), params.width, params.height);
+        }
+        // Atlas keys hold the sample size where image keys hold the target size, both never 0
+        long key = getKey(atlasRes, sampleSize, 0);
+
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            entry.lastAccess = ++mAccessCount;
+            view.setTag(R.id.plant_image_key, null);
+            show(view, entry.bitmap, mRegion, sampleSize);
+            if (listener != null) listener.onImageShown(view);
+            return;
+        }
+        if (isWaitingFor(view, key, mRegion)) return;
+        request(view, new Request(key, atlasRes, 0, 0, sampleSize, new Rect(mRegion), listener));
+    }
+
+    /**
+     * Shows an image in the view, decoded at the view's layout size (or its own size when the
+     * view wraps its content). A cached image is shown right away; otherwise the view is cleared
+     * until the image is decoded.
+     *
+     * @param view  The view to show the image in
+     * @param resId The image resource, or 0 to clear the view
+     */
+    public void loadInto(ImageView view, int resId) {
+        loadInto(view, resId, null);
+    }
+
+    /**
+     * Shows an image in the view, like {@link #loadInto(ImageView, int)}, notifying the listener
+     * once the image is shown
+     *
+     * @param listener The listener, or null
+     */
+    public void loadInto(ImageView view, int resId, OnImageShownListener listener) {
+        if (resId == 0) {
+            view.setTag(R.id.plant_image_key, null);
+            view.setImageDrawable(null);
+            if (listener != null) listener.onImageShown(view);
+            return;
+        }
+
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int width = params != null && params.width > 0 ? params.width : 0;
+        int height = params != null && params.height > 0 ? params.height : 0;
+        long key = getKey(resId, width, height);
+
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            entry.lastAccess = ++mAccessCount;
+            view.setTag(R.id.plant_image_key, null);
+            view.setImageBitmap(entry.bitmap);
+            if (listener != null) listener.onImageShown(view);
+            return;
+        }
+        if (isWaitingFor(view, key, null)) return;
+        request(view, new Request(key, resId, width, height, 0, null, listener));
+    }
+
+    /**
+     * @param region The atlas region the view should show, null for a whole image
+     * @return Whether the view is already cleared and waiting for this image to be decoded
+     */
+    private static boolean isWaitingFor(ImageView view, long key, Rect region) {
+        Object tag = view.getTag(R.id.plant_image_key);
+        if (!(tag instanceof Request)) return false;
+        Request request = (Request) tag;
+        return request.key == key
+                && (region == null ? request.region == null : region.equals(request.region));
+    }
+
+    /**
+     * Clears the view until its image is decoded, decoding it unless it already is being
+     */
+    private void request(ImageView view, final Request request) {
+        view.setImageDrawable(null);
+        view.setTag(R.id.plant_image_key, request);
+        ArrayList<ImageView> pendingViews = mPendingViews.get(request.key);
+        if (pendingViews != null) {
+            pendingViews.add(view);
+            return;
+        }
+        pendingViews = new ArrayList<>();
+        pendingViews.add(view);
+        mPendingViews.put(request.key, pendingViews);
+
+        mDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decodeBitmap(mResources, request);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onDecoded(request.key, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onDecoded(long key, Bitmap bitmap) {
+        ArrayList<ImageView> pendingViews = mPendingViews.get(key);
+        mPendingViews.remove(key);
+        if (bitmap != null) put(key, bitmap);
+        if (pendingViews == null) return;
+
+        for (ImageView view : pendingViews) {
+            // The view may have been rebound to another image in the meantime
+            Object tag = view.getTag(R.id.plant_image_key);
+            if (!(tag instanceof Request) || ((Request) tag).key != key) continue;
+            Request request = (Request) tag;
+            view.setTag(R.id.plant_image_key, null);
+            // A view whose image couldn't be decoded stays cleared, its next load tries again
+            if (bitmap == null) continue;
+            if (request.region != null) {
+                show(view, bitmap, request.region, request.sampleSize);
+            } else {
+                view.setImageBitmap(bitmap);
+            }
+            if (request.listener != null) request.listener.onImageShown(view);
+        }
+    }
+
+    /**
+     * Shows a region of a decoded atlas, sized on screen like the original image. The view's
+     * atlas drawable is reused when it has one, so showing another region allocates nothing.
+     *
+     * @param region The region in the full size atlas
+     */
+    private void show(ImageView view, Bitmap atlas, Rect region, int sampleSize) {
+        // Atlas images are mdpi, like the images they were packed from
+        float density = mResources.getDisplayMetrics().density;
+        int intrinsicWidth = Math.round(region.width() * density);
+        int intrinsicHeight = Math.round(region.height() * density);
+
+        Drawable current = view.getDrawable();
+        AtlasRegionDrawable drawable = current instanceof AtlasRegionDrawable
+                ? (AtlasRegionDrawable) current
+                : new AtlasRegionDrawable();
+        // ImageView only measures its drawable when it's set, so a resized one is set again
+        boolean reset = drawable != current || drawable.getIntrinsicWidth() != intrinsicWidth
+                || drawable.getIntrinsicHeight() != intrinsicHeight;
+        if (reset) view.setImageDrawable(null);
+        drawable.setRegion(atlas, region.left / sampleSize, region.top / sampleSize,
+                region.right / sampleSize, region.bottom / sampleSize, intrinsicWidth, intrinsicHeight);
+        if (reset) view.setImageDrawable(drawable);
+    }
+
+    private void put(long key, Bitmap bitmap) {
+        Entry entry = new Entry(bitmap, ++mAccessCount);
+        mEntries.put(key, entry);
+        mBytes += entry.bytes;
+
+        // Evicts the least recently used images, there are only a few dozen so a scan is enough.
+        // Evicted bitmaps aren't recycled as views may still be drawing them.
+        while (mBytes > mMaxBytes && mEntries.size() > 1) {
+            int oldest = 0;
+            for (int i = 1; i < mEntries.size(); i++) {
+                if (mEntries.valueAt(i).lastAccess < mEntries.valueAt(oldest).lastAccess) oldest = i;
+            }
+            mBytes -= mEntries.valueAt(oldest).bytes;
+            mEntries.removeAt(oldest);
+        }
+    }
+
+    /**
+     * Decodes the requested image without scaling it to the screen density (the view does the
+     * scaling when drawing), subsampled so it still covers the target size when there is one
+     *
+     * @return The bitmap, or null if the image couldn't be decoded
+     */
+    private static Bitmap decodeBitmap(Resources res, Request request) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inSampleSize = request.sampleSize;
+        if (request.width > 0 && request.height > 0) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(res, request.resId, options);
+            options.inSampleSize = getSampleSize(options.outWidth, options.outHeight,
+                    request.width, request.height);
+            options.inJustDecodeBounds = false;
+        }
+        return BitmapFactory.decodeResource(res, request.resId, options);
+    }
+
+    /**
+     * @return The largest power of two subsample of the image that still covers the target size
+     */
+    private static int getSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static long getKey(int resId, int width, int height) {
+        return ((long) resId << 32) | ((long) (width & 0xffff) << 16) | (height & 0xffff);
+    }
+
+    /**
+     * An image being decoded, and how a waiting view shows it
+     */
+    private static class Request {
+        final long key;
+        final int resId;
+        // Target size to subsample to, or 0 for a fixed sample size
+        final int width;
+        final int height;
+        final int sampleSize;
+        // Region of an atlas to show, null to show the whole image
+        final Rect region;
+        final OnImageShownListener listener;
+
+        Request(long key, int resId, int width, int height, int sampleSize, Rect region,
+                OnImageShownListener listener) {
+            this.key = key;
+            this.resId = resId;
+            this.width = width;
+            this.height = height;
+            this.sampleSize = sampleSize;
+            this.region = region;
+            this.listener = listener;
+        }
+    }
+
+    private static class Entry {
+        final Bitmap bitmap;
+        final int bytes;
+        long lastAccess;
+
+        Entry(Bitmap bitmap, long lastAccess) {
+            this.bitmap = bitmap;
+            this.bytes = bitmap.getRowBytes() * bitmap.getHeight();
+            this.lastAccess = lastAccess;
+        }
+    }
+}
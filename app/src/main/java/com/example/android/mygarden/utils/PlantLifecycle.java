@@ -0,0 +1,298 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.example.android.mygarden.utils.PlantUtils.TINY_AGE;
+
+/**
+ * Computes the lifecycle state of plants (status, size, water level and when they next change)
+ * from their type and timestamps alone, using the PlantSpecies thresholds, without any Android
+ * dependency. Whole gardens are evaluated in a single pass over primitive arrays, split across
+ * cores when they are large.
+ * <p>
+ * Statuses are PlantStatus ordinals and sizes are PlantSize ordinals, or SIZE_EMPTY_POT for a
+ * plant that hasn't sprouted yet.
+ */
+public final class PlantLifecycle {
+
+    public static final int SIZE_EMPTY_POT = -1;
+
+    // Returned as the next transition of a plant that will never change again
+    public static final long NO_TRANSITION = Long.MAX_VALUE;
+
+    // Gardens at least this large are evaluated in parallel
+    static final int PARALLEL_THRESHOLD = 50000;
+
+    private static final int STATUS_ALIVE = PlantUtils.PlantStatus.ALIVE.ordinal();
+    private static final int STATUS_DYING = PlantUtils.PlantStatus.DYING.ordinal();
+    private static final int STATUS_DEAD = PlantUtils.PlantStatus.DEAD.ordinal();
+    private static final int SIZE_TINY = PlantUtils.PlantSize.TINY.ordinal();
+    private static final int SIZE_JUVENILE = PlantUtils.PlantSize.JUVENILE.ordinal();
+    private static final int SIZE_FULLY_GROWN = PlantUtils.PlantSize.FULLY_GROWN.ordinal();
+
+    private static ExecutorService sExecutor;
+
+    private PlantLifecycle() {
+    }
+
+    /**
+     * The lifecycle state of every plant of a garden, in parallel arrays indexed like the input
+     */
+    public static final class Evaluation {
+        public final int[] status;
+        public final int[] size;
+        public final int[] waterPercent;
+        public final long[] nextTransitionAt;
+        // Number of plants evaluated, and the earliest of their next transitions
+        public int count;
+        public long earliestTransitionAt = NO_TRANSITION;
+
+        public Evaluation(int capacity) {
+            status = new int[capacity];
+            size = new int[capacity];
+            waterPercent = new int[capacity];
+            nextTransitionAt = new long[capacity];
+        }
+    }
+
+    /**
+     * Evaluates a whole garden
+     *
+     * @param species   The thresholds of each plant type
+     * @param types     The type of each plant
+     * @param createdAt The creation time of each plant
+     * @param wateredAt The last watering time of each plant
+     * @param count     The number of plants in the arrays
+     * @param now       The time to evaluate the plants at
+     * @return The state of each plant
+     */
+    public static Evaluation evaluate(PlantSpecies species, int[] types, long[] createdAt,
+                                      long[] wateredAt, int count, long now) {
+        Evaluation evaluation = new Evaluation(count);
+        evaluate(species, types, createdAt, wateredAt, count, now, evaluation);
+        return evaluation;
+    }
+
+    /**
+     * Evaluates a whole garden into an existing evaluation, so repeated evaluations of a garden
+     * of the same size don't allocate
+     *
+     * @param into Receives the state of each plant, must hold at least count plants
+     */
+    public static void evaluate(final PlantSpecies species, final int[] types,
+                                final long[] createdAt, final long[] wateredAt, int count,
+                                final long now, final Evaluation into) {
+        if (count > into.status.length) {
+            throw new IllegalArgumentException("Evaluation too small for " + count + " plants");
+        }
+        into.count = count;
+
+        if (count < PARALLEL_THRESHOLD) {
+            into.earliestTransitionAt = evaluateRange(species, types, createdAt, wateredAt, now, into, 0, count);
+            return;
+        }
+
+        // Splits the garden into one contiguous chunk per core
+        int chunkCount = Runtime.getRuntime().availableProcessors();
+        int chunkSize = (count + chunkCount - 1) / chunkCount;
+        final long[] earliest = new long[chunkCount];
+        final CountDownLatch done = new CountDownLatch(chunkCount);
+        final Throwable[] failure = new Throwable[1];
+
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            final int index = chunk;
+            final int from = Math.min(count, chunk * chunkSize);
+            final int to = Math.min(count, from + chunkSize);
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        earliest[index] = evaluateRange(species, types, createdAt, wateredAt, now, into, from, to);
+                    } catch (Throwable t) {
+                        synchronized (failure) {
+                            failure[0] = t;
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating plants", e);
+        }
+        synchronized (failure) {
+            if (failure[0] != null) throw new IllegalStateException("Failed to evaluate plants", failure[0]);
+        }
+
+        long earliestTransitionAt = NO_TRANSITION;
+        for (long transitionAt : earliest) {
+            earliestTransitionAt = Math.min(earliestTransitionAt, transitionAt);
+        }
+        into.earliestTransitionAt = earliestTransitionAt;
+    }
+
+    /**
+     * Evaluates the plants in [from, to)
+     *
+     * @return The earliest next transition of these plants
+     */
+    private static long evaluateRange(PlantSpecies species, int[] types, long[] createdAt,
+                                      long[] wateredAt, long now, Evaluation into, int from, int to) {
+        long earliestTransitionAt = NO_TRANSITION;
+        for (int i = from; i < to; i++) {
+            int type = types[i];
+            long plantAge = now - createdAt[i];
+            long waterAge = now - wateredAt[i];
+            into.status[i] = getStatus(species, type, waterAge);
+            into.size[i] = getSize(species, type, plantAge);
+            into.waterPercent[i] = getWaterPercent(species, type, waterAge);
+            long transitionAt = getNextTransitionAt(species, type, createdAt[i], wateredAt[i], now);
+            into.nextTransitionAt[i] = transitionAt;
+            if (transitionAt < earliestTransitionAt) earliestTransitionAt = transitionAt;
+        }
+        return earliestTransitionAt;
+    }
+
+    /**
+     * @param species  The thresholds of each plant type
+     * @param type     The plant type
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return The PlantStatus ordinal of the plant
+     */
+    public static int getStatus(PlantSpecies species, int type, long waterAge) {
+        if (waterAge > species.getMaxAgeWithoutWater(type)) return STATUS_DEAD;
+        if (waterAge > species.getDangerAgeWithoutWater(type)) return STATUS_DYING;
+        return STATUS_ALIVE;
+    }
+
+    /**
+     * @param species  The thresholds of each plant type
+     * @param type     The plant type
+     * @param plantAge Time (in milliseconds) the plant has been alive
+     * @return The PlantSize ordinal of the plant, or SIZE_EMPTY_POT if it hasn't sprouted
+     */
+    public static int getSize(PlantSpecies species, int type, long plantAge) {
+        if (plantAge > species.getFullyGrownAge(type)) return SIZE_FULLY_GROWN;
+        if (plantAge > species.getJuvenileAge(type)) return SIZE_JUVENILE;
+        if (plantAge > TINY_AGE) return SIZE_TINY;
+        return SIZE_EMPTY_POT;
+    }
+
+    /**
+     * @param species  The thresholds of each plant type
+     * @param type     The plant type
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return The water left in the plant, from 100 (just watered) to 0 (dead)
+     */
+    public static int getWaterPercent(PlantSpecies species, int type, long waterAge) {
+        int waterPercent = 100 - ((int) (100 * waterAge / species.getMaxAgeWithoutWater(type)));
+        return Math.max(0, Math.min(100, waterPercent));
+    }
+
+    /**
+     * @param species  The thresholds of each plant type
+     * @param type     The plant type
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return Whether the plant can be watered: not watered too recently and not dead
+     */
+    public static boolean canWater(PlantSpecies species, int type, long waterAge) {
+        return waterAge > species.getMinAgeBetweenWater(type)
+                && waterAge < species.getMaxAgeWithoutWater(type);
+    }
+
+    /**
+     * @param species  The thresholds of each plant type
+     * @param type     The plant type
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return Whether the plant is dead
+     */
+    public static boolean isDead(PlantSpecies species, int type, long waterAge) {
+        return waterAge > species.getMaxAgeWithoutWater(type);
+    }
+
+    /**
+     * Returns the next time the plant changes status or size, or becomes waterable
+     *
+     * @param species   The thresholds of each plant type
+     * @param type      The plant type
+     * @param createdAt The creation time of the plant
+     * @param wateredAt The last watering time of the plant
+     * @param now       The current time
+     * @return The time of the next transition, or NO_TRANSITION if the plant won't change anymore
+     */
+    public static long getNextTransitionAt(PlantSpecies species, int type, long createdAt,
+                                           long wateredAt, long now) {
+        long next = NO_TRANSITION;
+        // A plant changes as soon as its age is strictly over a threshold
+        next = earliestAfter(next, wateredAt + species.getMinAgeBetweenWater(type) + 1, now);
+        next = earliestAfter(next, wateredAt + species.getDangerAgeWithoutWater(type) + 1, now);
+        next = earliestAfter(next, wateredAt + species.getMaxAgeWithoutWater(type) + 1, now);
+        next = earliestAfter(next, createdAt + TINY_AGE + 1, now);
+        next = earliestAfter(next, createdAt + species.getJuvenileAge(type) + 1, now);
+        next = earliestAfter(next, createdAt + species.getFullyGrownAge(type) + 1, now);
+        return next;
+    }
+
+    /**
+     * Returns the next time the water level of the plant, as given by getWaterPercent, drops
+     *
+     * @param species   The thresholds of each plant type
+     * @param type      The plant type
+     * @param wateredAt The last watering time of the plant
+     * @param now       The current time
+     * @return The time of the next drop, or NO_TRANSITION if the plant has no water left
+     */
+    public static long getNextWaterPercentChangeAt(PlantSpecies species, int type, long wateredAt,
+                                                   long now) {
+        long maxAge = species.getMaxAgeWithoutWater(type);
+        long waterAge = now - wateredAt;
+        if (waterAge >= maxAge) return NO_TRANSITION;
+        // The percent lost so far, then the first water age at which one more percent is lost
+        long lostPercent = Math.max(0, 100 * waterAge / maxAge);
+        return wateredAt + ((lostPercent + 1) * maxAge + 99) / 100;
+    }
+
+    private static long earliestAfter(long current, long candidate, long now) {
+        return candidate > now && candidate < current ? candidate : current;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "PlantLifecycle");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return sExecutor;
+    }
+}
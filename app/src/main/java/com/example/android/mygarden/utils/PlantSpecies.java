@@ -0,0 +1,170 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.example.android.mygarden.R;
+
+/**
+ * Catalogue of the watering and growth thresholds of each plant type, indexed by
+ * [threshold][type] in the same order as the types in arrays.xml.
+ * Loaded once per process; a type missing from the catalogue uses the PlantUtils defaults.
+ */
+public final class PlantSpecies {
+
+    // Threshold indexes
+    public static final int MIN_AGE_BETWEEN_WATER = 0;
+    public static final int DANGER_AGE_WITHOUT_WATER = 1;
+    public static final int MAX_AGE_WITHOUT_WATER = 2;
+    public static final int JUVENILE_AGE = 3;
+    public static final int FULLY_GROWN_AGE = 4;
+    public static final int THRESHOLD_COUNT = 5;
+
+    private static final long HOUR_MILLISECONDS = 1000 * 60 * 60;
+
+    // Thresholds of a type that isn't in the catalogue
+    private static final long[] DEFAULT_THRESHOLDS = {
+            PlantUtils.MIN_AGE_BETWEEN_WATER,
+            PlantUtils.DANGER_AGE_WITHOUT_WATER,
+            PlantUtils.MAX_AGE_WITHOUT_WATER,
+            PlantUtils.JUVENILE_AGE,
+            PlantUtils.FULLY_GROWN_AGE
+    };
+
+    // The same defaults for every type
+    public static final PlantSpecies DEFAULT = new PlantSpecies(new long[THRESHOLD_COUNT][0]);
+
+    private static volatile PlantSpecies sCatalogue;
+
+    private final long[][] mThresholds;
+
+    private PlantSpecies(long[][] thresholds) {
+        mThresholds = thresholds;
+    }
+
+    /**
+     * Returns the catalogue, loading it from the resources on first use
+     *
+     * @param context The context
+     * @return The species catalogue
+     */
+    public static PlantSpecies get(Context context) {
+        PlantSpecies catalogue = sCatalogue;
+        if (catalogue == null) {
+            synchronized (PlantSpecies.class) {
+                catalogue = sCatalogue;
+                if (catalogue == null) {
+                    catalogue = load(context.getResources());
+                    sCatalogue = catalogue;
+                }
+            }
+        }
+        return catalogue;
+    }
+
+    /**
+     * Sets the catalogue instead of loading it from the resources, for code running without an
+     * Android runtime such as the benchmarks
+     *
+     * @param catalogue The species catalogue
+     */
+    static void setCatalogue(PlantSpecies catalogue) {
+        synchronized (PlantSpecies.class) {
+            sCatalogue = catalogue;
+        }
+    }
+
+    /**
+     * Reads the threshold arrays (in hours) from arrays.xml
+     */
+    private static PlantSpecies load(Resources res) {
+        int[][] hours = {
+                res.getIntArray(R.array.plant_hours_between_water),
+                res.getIntArray(R.array.plant_danger_hours_without_water),
+                res.getIntArray(R.array.plant_max_hours_without_water),
+                res.getIntArray(R.array.plant_juvenile_hours),
+                res.getIntArray(R.array.plant_fully_grown_hours)
+        };
+
+        long[][] thresholds = new long[THRESHOLD_COUNT][];
+        for (int threshold = 0; threshold < THRESHOLD_COUNT; threshold++) {
+            thresholds[threshold] = new long[hours[threshold].length];
+            for (int type = 0; type < hours[threshold].length; type++) {
+                thresholds[threshold][type] = hours[threshold][type] * HOUR_MILLISECONDS;
+            }
+        }
+        return new PlantSpecies(thresholds);
+    }
+
+    /**
+     * @return The number of types with their own thresholds
+     */
+    public int getTypeCount() {
+        return mThresholds[MAX_AGE_WITHOUT_WATER].length;
+    }
+
+    /**
+     * @param type      The plant type
+     * @param threshold One of the threshold indexes
+     * @return The threshold (in milliseconds) for the type
+     */
+    public long getThreshold(int type, int threshold) {
+        long[] thresholds = mThresholds[threshold];
+        return type >= 0 && type < thresholds.length ? thresholds[type] : DEFAULT_THRESHOLDS[threshold];
+    }
+
+    public long getMinAgeBetweenWater(int type) {
+        return getThreshold(type, MIN_AGE_BETWEEN_WATER);
+    }
+
+    public long getDangerAgeWithoutWater(int type) {
+        return getThreshold(type, DANGER_AGE_WITHOUT_WATER);
+    }
+
+    public long getMaxAgeWithoutWater(int type) {
+        return getThreshold(type, MAX_AGE_WITHOUT_WATER);
+    }
+
+    public long getJuvenileAge(int type) {
+        return getThreshold(type, JUVENILE_AGE);
+    }
+
+    public long getFullyGrownAge(int type) {
+        return getThreshold(type, FULLY_GROWN_AGE);
+    }
+
+    /**
+     * Builds a SQL expression evaluating to the threshold of the plant type in the given column,
+     * so per-type thresholds can be applied inside a single statement
+     *
+     * @param typeColumn The column holding the plant type
+     * @param threshold  One of the threshold indexes
+     * @return A CASE expression over the type column
+     */
+    public String toSqlExpression(String typeColumn, int threshold) {
+        long[] thresholds = mThresholds[threshold];
+        if (thresholds.length == 0) return String.valueOf(DEFAULT_THRESHOLDS[threshold]);
+
+        StringBuilder sql = new StringBuilder("(CASE ").append(typeColumn);
+        for (int type = 0; type < thresholds.length; type++) {
+            sql.append(" WHEN ").append(type).append(" THEN ").append(thresholds[type]);
+        }
+        return sql.append(" ELSE ").append(DEFAULT_THRESHOLDS[threshold]).append(" END)").toString();
+    }
+}
@@ -28,18 +28,24 @@ public class PlantUtils {
     private static final long HOUR_MILLISECONDS = MINUTE_MILLISECONDS * 60;
     private static final long DAY_MILLISECONDS = HOUR_MILLISECONDS * 24;
 
+    // Default thresholds, used for plant types that have none of their own in PlantSpecies
     public static final long MIN_AGE_BETWEEN_WATER = HOUR_MILLISECONDS * 2; // can water every 2 hours
-    static final long DANGER_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 6; // in danger after 6 hours
+    public static final long DANGER_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 6; // in danger after 6 hours
     public static final long MAX_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 12; // plants die after 12 hours
-    static final long TINY_AGE = DAY_MILLISECONDS * 0; // plants start tiny
-    static final long JUVENILE_AGE = DAY_MILLISECONDS * 1; // 1 day old
-    static final long FULLY_GROWN_AGE = DAY_MILLISECONDS * 2; // 2 days old
+    public static final long TINY_AGE = DAY_MILLISECONDS * 0; // plants start tiny
+    public static final long JUVENILE_AGE = DAY_MILLISECONDS * 1; // 1 day old
+    public static final long FULLY_GROWN_AGE = DAY_MILLISECONDS * 2; // 2 days old
 
 
     public enum PlantStatus {ALIVE, DYING, DEAD}
 
     public enum PlantSize {TINY, JUVENILE, FULLY_GROWN}
 
+    // Image resources indexed by [type][status][size], and type name string resources indexed
+    // by type. Resolved once per process since getIdentifier() is a slow reflective lookup.
+    private static volatile int[][][] sPlantImageRes;
+    private static volatile int[] sPlantTypeNameRes;
+
     /**
      * Returns the corresponding image resource of the plant given the plant's age and
      * time since it was last watered
@@ -49,21 +55,27 @@ public class PlantUtils {
      * @return Image Resource to the correct plant image
      */
     public static int getPlantImageRes(Context context, long plantAge, long waterAge, int type) {
-        //check if plant is dead first
-        PlantStatus status = PlantStatus.ALIVE;
-        if (waterAge > MAX_AGE_WITHOUT_WATER) status = PlantStatus.DEAD;
-        else if (waterAge > DANGER_AGE_WITHOUT_WATER) status = PlantStatus.DYING;
-
-        //Update image if old enough
-        if (plantAge > FULLY_GROWN_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.FULLY_GROWN);
-        } else if (plantAge > JUVENILE_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.JUVENILE);
-        } else if (plantAge > TINY_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.TINY);
-        } else {
-            return R.drawable.empty_pot;
-        }
+        PlantSpecies species = PlantSpecies.get(context);
+        return getPlantImgRes(context, type,
+                PlantLifecycle.getStatus(species, type, waterAge),
+                PlantLifecycle.getSize(species, type, plantAge));
+    }
+
+    /**
+     * Returns the image resource of the plant given its status and size as computed
+     * by PlantLifecycle
+     *
+     * @param context The context
+     * @param type    The plant type (starts from 0 and corresponds to the index to the item in arrays.xml)
+     * @param status  The PlantStatus ordinal
+     * @param size    The PlantSize ordinal, or PlantLifecycle.SIZE_EMPTY_POT
+     * @return Image Resource to the correct plant image
+     */
+    public static int getPlantImgRes(Context context, int type, int status, int size) {
+        if (size == PlantLifecycle.SIZE_EMPTY_POT) return R.drawable.empty_pot;
+        int[][][] plantImageRes = getPlantImageResTable(context);
+        if (type < 0 || type >= plantImageRes.length) return 0;
+        return plantImageRes[type][status][size];
     }
 
     /**
@@ -77,33 +89,87 @@ public class PlantUtils {
      * @return Image Resource to the correct plant image
      */
     public static int getPlantImgRes(Context context, int type, PlantStatus status, PlantSize size) {
+        return getPlantImgRes(context, type, status.ordinal(), size.ordinal());
+    }
 
-        TypedArray plantTypes = context.getResources().obtainTypedArray(R.array.plant_types);
-        String resName = plantTypes.getString(type);
-
-        switch (status) {
-            case DYING:
-                resName += "_danger";
-                break;
-            case DEAD:
-                resName += "_dead";
-                break;
+    /**
+     * Returns the table of plant image resources, resolving it on first use
+     *
+     * @param context The context
+     * @return Image resources indexed by [type][status][size] (0 where the image doesn't exist)
+     */
+    private static int[][][] getPlantImageResTable(Context context) {
+        int[][][] plantImageRes = sPlantImageRes;
+        if (plantImageRes == null) {
+            synchronized (PlantUtils.class) {
+                plantImageRes = sPlantImageRes;
+                if (plantImageRes == null) {
+                    loadResourceTables(context);
+                    plantImageRes = sPlantImageRes;
+                }
+            }
         }
+        return plantImageRes;
+    }
 
-        switch (size) {
-            case TINY:
-                resName += "_1";
-                break;
-            case JUVENILE:
-                resName += "_2";
-                break;
-            case FULLY_GROWN:
-                resName += "_3";
-                break;
+    /**
+     * Resolves the image and name resources of every plant type in arrays.xml.
+     * Image names follow the type name, then "_danger" or "_dead" for the status,
+     * then "_1", "_2" or "_3" for the size.
+     */
+    private static void loadResourceTables(Context context) {
+        Resources res = context.getResources();
+        String packageName = context.getPackageName();
+        PlantStatus[] statuses = PlantStatus.values();
+        PlantSize[] sizes = PlantSize.values();
+
+        TypedArray plantTypes = res.obtainTypedArray(R.array.plant_types);
+        try {
+            int typeCount = plantTypes.length();
+            int[][][] plantImageRes = new int[typeCount][statuses.length][sizes.length];
+            int[] plantTypeNameRes = new int[typeCount];
+
+            for (int type = 0; type < typeCount; type++) {
+                String typeName = plantTypes.getString(type);
+                plantTypeNameRes[type] = res.getIdentifier(typeName, "string", packageName);
+
+                for (PlantStatus status : statuses) {
+                    String statusName = typeName;
+                    switch (status) {
+                        case DYING:
+                            statusName += "_danger";
+                            break;
+                        case DEAD:
+                            statusName += "_dead";
+                            break;
+                    }
+                    for (PlantSize size : sizes) {
+                        String resName = statusName + "_" + (size.ordinal() + 1);
+                        plantImageRes[type][status.ordinal()][size.ordinal()] =
+                                res.getIdentifier(resName, "drawable", packageName);
+                    }
+                }
+            }
+
+            sPlantTypeNameRes = plantTypeNameRes;
+            sPlantImageRes = plantImageRes;
+        } finally {
+            plantTypes.recycle();
         }
+    }
 
-        plantTypes.recycle();
-        return context.getResources().getIdentifier(resName, "drawable", context.getPackageName());
+    /**
+     * Sets the resource tables instead of resolving them from the resources, for code running
+     * without an Android runtime such as the benchmarks
+     *
+     * @param plantImageRes    Image resources indexed by [type][status][size]
+     * @param plantTypeNameRes Type name string resources indexed by type
+     */
+    static void setResourceTables(int[][][] plantImageRes, int[] plantTypeNameRes) {
+        synchronized (PlantUtils.class) {
+            sPlantTypeNameRes = plantTypeNameRes;
+            sPlantImageRes = plantImageRes;
+        }
     }
 
     /**
@@ -114,17 +180,14 @@ public class PlantUtils {
      * @return The plant type display name
      */
     public static String getPlantTypeName(Context context, int type) {
-
-        TypedArray plantTypes = context.getResources().obtainTypedArray(R.array.plant_types);
-        String resName = plantTypes.getString(type);
-        int resId = context.getResources().getIdentifier(resName, "string", context.getPackageName());
+        getPlantImageResTable(context);
+        int[] plantTypeNameRes = sPlantTypeNameRes;
+        int resId = type >= 0 && type < plantTypeNameRes.length ? plantTypeNameRes[type] : 0;
 
         try {
             return context.getResources().getString(resId);
         } catch (Resources.NotFoundException ex) {
             return context.getResources().getString(R.string.unknown_type);
-        } finally {
-            plantTypes.recycle();
         }
     }
 
@@ -142,6 +205,19 @@ public class PlantUtils {
         return (int) (milliSeconds / MINUTE_MILLISECONDS);
     }
 
+    /**
+     * Returns how long until getDisplayAgeInt and getDisplayAgeUnit display a different age
+     *
+     * @param milliSeconds The age in milli seconds
+     * @return The time (in milliseconds) until the displayed age changes
+     */
+    public static long getDisplayAgeChangeDelay(long milliSeconds) {
+        long unit = milliSeconds >= DAY_MILLISECONDS ? DAY_MILLISECONDS
+                : milliSeconds >= HOUR_MILLISECONDS ? HOUR_MILLISECONDS : MINUTE_MILLISECONDS;
+        long remainder = milliSeconds % unit;
+        return remainder < 0 ? -remainder : unit - remainder;
+    }
+
     /**
      * Converts the age in milli seconds to a displayable format (days, hours or minutes)
      *
@@ -0,0 +1,79 @@
+package com.example.android.mygarden.simulator;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.mygarden.provider.PlantContentProvider;
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.utils.PlantSpecies;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the garden simulator on the JVM under Robolectric, against a PlantContentProvider reached
+ * through a MockContentResolver, and prints the report. Robolectric gives every test a fresh
+ * database, so no garden is ever touched. The garden size and duration can be changed with
+ * project properties:
+ * <pre>
+ * ./gradlew testDebugUnitTest \
+ *     --tests com.example.android.mygarden.simulator.GardenSimulatorTest \
+ *     -PsimulatorPlants=100000 -PsimulatorDays=7
+ * </pre>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GardenSimulatorTest {
+
+    private Context mContext;
+    private MockContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.authority = PlantContract.AUTHORITY;
+        PlantContentProvider provider = new PlantContentProvider();
+        provider.attachInfo(mContext, providerInfo);
+        mResolver = new MockContentResolver(mContext);
+        mResolver.addProvider(PlantContract.AUTHORITY, provider);
+    }
+
+    @Test
+    public void simulateGarden() {
+        GardenSimulator.Config config = new GardenSimulator.Config();
+        config.plantCount = Integer.parseInt(System.getProperty("simulatorPlants", "10000"));
+        config.days = Integer.parseInt(System.getProperty("simulatorDays", "2"));
+
+        GardenSimulator.Report report = new GardenSimulator(mContext, mResolver,
+                PlantSpecies.get(mContext), config).run();
+        System.out.println(report);
+
+        long steps = config.days * 24 * 60 * 60 * 1000L / config.stepMillis;
+        assertEquals(config.plantCount, report.inserts.items);
+        assertEquals(config.plantCount, report.alive + report.dying + report.dead);
+        assertEquals(steps, report.widgetRefreshes.count);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.mygarden.benchmark;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+
+import com.example.android.mygarden.utils.BenchmarkHooks;
+import com.example.android.mygarden.utils.PlantSpecies;
+import com.example.android.mygarden.utils.PlantUtils;
+
+/**
+ * Sets up the app's lookup tables without an Android runtime. PlantUtils and PlantSpecies load
+ * them from the resources on first use, which needs a device, so the benchmarks pre-populate
+ * them with synthetic resource IDs instead and measure the steady state the app runs in.
+ */
+final class BenchmarkEnvironment {
+
+    static final int PLANT_TYPE_COUNT = 3;
+
+    private static final int STATUS_COUNT = PlantUtils.PlantStatus.values().length;
+    private static final int SIZE_COUNT = PlantUtils.PlantSize.values().length;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Fills the PlantUtils resource tables and the PlantSpecies catalogue
+     *
+     * @return A context whose resources answer string lookups, enough for PlantUtils
+     */
+    static synchronized Context setUp() {
+        int[][][] plantImageRes = new int[PLANT_TYPE_COUNT][STATUS_COUNT][SIZE_COUNT];
+        int[] plantTypeNameRes = new int[PLANT_TYPE_COUNT];
+        int resId = 0x7f020000;
+        for (int type = 0; type < PLANT_TYPE_COUNT; type++) {
+            plantTypeNameRes[type] = resId++;
+            for (int status = 0; status < STATUS_COUNT; status++) {
+                for (int size = 0; size < SIZE_COUNT; size++) {
+                    plantImageRes[type][status][size] = resId++;
+                }
+            }
+        }
+
+        BenchmarkHooks.setResourceTables(plantImageRes, plantTypeNameRes);
+        BenchmarkHooks.setSpeciesCatalogue(PlantSpecies.DEFAULT);
+        return new BenchmarkContext();
+    }
+
+    /**
+     * Context with just enough resources for the string lookups of PlantUtils
+     */
+    private static class BenchmarkContext extends ContextWrapper {
+
+        private final Resources mResources = new BenchmarkResources();
+
+        BenchmarkContext() {
+            super(null);
+        }
+
+        @Override
+        public Resources getResources() {
+            return mResources;
+        }
+    }
+
+    private static class BenchmarkResources extends Resources {
+
+        private static final String RESOURCE_STRING = "resource";
+
+        BenchmarkResources() {
+            super((ClassLoader) null);
+        }
+
+        @Override
+        public String getString(int id) {
+            // A real lookup is a table read too, so no allocation here
+            return RESOURCE_STRING;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.mygarden.benchmark;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.database.MatrixCursor;
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.utils.PlantUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a page of plant rows to what the garden list displays, the way
+ * PlantListAdapter.onBindViewHolder does for each visible row. One invocation binds every row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CursorMappingBenchmark {
+
+    private static final String[] COLUMNS = {
+            PlantEntry._ID,
+            PlantEntry.COLUMN_PLANT_TYPE,
+            PlantEntry.COLUMN_CREATION_TIME,
+            PlantEntry.COLUMN_LAST_WATERED_TIME
+    };
+
+    @Param({"100", "1000"})
+    public int rowCount;
+
+    private Context mContext;
+    private MatrixCursor mCursor;
+    private long mNow;
+
+    @Setup
+    public void setUp() {
+        mContext = BenchmarkEnvironment.setUp();
+        mNow = System.currentTimeMillis();
+
+        Random random = new Random(42);
+        mCursor = new MatrixCursor(COLUMNS, rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            mCursor.addRow(new Object[]{
+                    (long) i,
+                    random.nextInt(BenchmarkEnvironment.PLANT_TYPE_COUNT),
+                    mNow - (long) (random.nextDouble() * PlantUtils.FULLY_GROWN_AGE * 2),
+                    mNow - (long) (random.nextDouble() * PlantUtils.MAX_AGE_WITHOUT_WATER * 2)
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mCursor.close();
+    }
+
+    /**
+     * Column indices resolved on every row, as the adapter does today
+     */
+    @Benchmark
+    public void bindWithColumnLookups(Blackhole blackhole) {
+        for (int position = 0; position < rowCount; position++) {
+            mCursor.moveToPosition(position);
+            int idIndex = mCursor.getColumnIndex(PlantEntry._ID);
+            int createTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
+            int waterTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
+            int plantTypeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+            bindRow(blackhole, idIndex, plantTypeIndex, createTimeIndex, waterTimeIndex,
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Column indices and the current time resolved once per page
+     */
+    @Benchmark
+    public void bindWithCachedColumns(Blackhole blackhole) {
+        int idIndex = mCursor.getColumnIndex(PlantEntry._ID);
+        int createTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
+        int waterTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
+        int plantTypeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+        long timeNow = System.currentTimeMillis();
+        for (int position = 0; position < rowCount; position++) {
+            mCursor.moveToPosition(position);
+            bindRow(blackhole, idIndex, plantTypeIndex, createTimeIndex, waterTimeIndex, timeNow);
+        }
+    }
+
+    private void bindRow(Blackhole blackhole, int idIndex, int plantTypeIndex, int createTimeIndex,
+                         int waterTimeIndex, long timeNow) {
+        long plantId = mCursor.getLong(idIndex);
+        int plantType = mCursor.getInt(plantTypeIndex);
+        long createdAt = mCursor.getLong(createTimeIndex);
+        long wateredAt = mCursor.getLong(waterTimeIndex);
+
+        blackhole.consume(PlantUtils.getPlantImageRes(mContext, timeNow - createdAt, timeNow - wateredAt, plantType));
+        blackhole.consume(String.valueOf(plantId));
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.android.mygarden.benchmark;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantSql;
+import com.example.android.mygarden.utils.PlantSpecies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of garden reads while the whole garden is being watered, with and without
+ * write-ahead logging (the PlantDbHelper opt-in). Readers query keyset pages like the garden
+ * screen and the grid widget do, and a writer waters the garden like METHOD_WATER_PLANTS, each
+ * thread on its own connection to the same database file as the provider's connection pool
+ * would be. With the rollback journal, readers wait whenever the writer commits; with WAL they
+ * keep reading the last committed snapshot.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+public class PlantContentionBenchmark {
+
+    private static final long HOUR_MILLISECONDS = 1000 * 60 * 60;
+    private static final int PAGE_SIZE = 100;
+    // Long enough that a waiting reader is measured rather than failed
+    private static final int BUSY_TIMEOUT_MILLISECONDS = 10000;
+
+    private static final String SQL_PAGE = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " WHERE " + PlantSql.PAGE_SELECTION +
+            " ORDER BY " + PlantSql.PAGE_SORT_ORDER +
+            " LIMIT " + PAGE_SIZE;
+
+    @Param({"false", "true"})
+    public boolean writeAheadLogging;
+
+    @Param({"10000"})
+    public int plantCount;
+
+    File mDatabaseFile;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mDatabaseFile = File.createTempFile("plants", ".db");
+        Connection connection = open(mDatabaseFile);
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                // The journal mode is stored in the database file, so every connection uses it
+                statement.execute("PRAGMA journal_mode=" + (writeAheadLogging ? "WAL" : "DELETE"));
+            } finally {
+                statement.close();
+            }
+            PlantStoreBenchmark.createSchema(connection);
+
+            connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepareStatement(PlantStoreBenchmark.SQL_INSERT);
+            try {
+                Random random = new Random(42);
+                for (int i = 0; i < plantCount; i++) {
+                    insert.setInt(1, random.nextInt(BenchmarkEnvironment.PLANT_TYPE_COUNT));
+                    insert.setLong(2, i);
+                    insert.setLong(3, 0);
+                    insert.executeUpdate();
+                }
+            } finally {
+                insert.close();
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        String path = mDatabaseFile.getAbsolutePath();
+        for (File file : new File[]{mDatabaseFile, new File(path + "-wal"), new File(path + "-shm"),
+                new File(path + "-journal")}) {
+            if (file.exists() && !file.delete()) file.deleteOnExit();
+        }
+    }
+
+    private static Connection open(File databaseFile) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLISECONDS);
+        } finally {
+            statement.close();
+        }
+        return connection;
+    }
+
+    /**
+     * A connection of one reader or writer thread
+     */
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection mConnection;
+        private PreparedStatement mPage;
+        private PreparedStatement mWaterGarden;
+        private Random mRandom;
+        private int mPlantCount;
+        private long mNow;
+
+        @Setup(Level.Trial)
+        public void open(PlantContentionBenchmark database) throws SQLException {
+            mConnection = PlantContentionBenchmark.open(database.mDatabaseFile);
+            mPage = mConnection.prepareStatement(SQL_PAGE);
+            mWaterGarden = mConnection.prepareStatement(PlantSql.waterPlants(PlantSpecies.DEFAULT));
+            mRandom = new Random();
+            mPlantCount = database.plantCount;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            mConnection.close();
+        }
+    }
+
+    /**
+     * Reads the page of plants that follows a random plant
+     */
+    @Benchmark
+    @Group("readWhileWatering")
+    @GroupThreads(3)
+    public void readPage(Session session, Blackhole blackhole) throws SQLException {
+        // Plants were created one millisecond apart, in ID order
+        long afterCreatedAt = session.mRandom.nextInt(session.mPlantCount);
+        session.mPage.setLong(1, afterCreatedAt);
+        session.mPage.setLong(2, afterCreatedAt);
+        session.mPage.setLong(3, afterCreatedAt + 1);
+        ResultSet resultSet = session.mPage.executeQuery();
+        try {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+                blackhole.consume(resultSet.getInt(2));
+                blackhole.consume(resultSet.getLong(3));
+                blackhole.consume(resultSet.getLong(4));
+            }
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * Waters the whole garden. The clock moves past the minimum time between waterings first,
+     * so every plant is rewritten each time.
+     */
+    @Benchmark
+    @Group("readWhileWatering")
+    @GroupThreads(1)
+    public int waterGarden(Session session) throws SQLException {
+        session.mNow += 2 * HOUR_MILLISECONDS + 1;
+        session.mWaterGarden.setLong(1, session.mNow);
+        return session.mWaterGarden.executeUpdate();
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.android.mygarden.benchmark;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantSql;
+import com.example.android.mygarden.utils.PlantSpecies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert, watering and query throughput of the plants table, on a file-backed SQLite database
+ * standing in for the one behind PlantContentProvider. The schema and statements come from
+ * PlantSql, like in the app.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PlantStoreBenchmark {
+
+    private static final long HOUR_MILLISECONDS = 1000 * 60 * 60;
+    private static final int INSERT_BATCH_SIZE = 100;
+    private static final int PAGE_SIZE = 100;
+
+    static final String SQL_INSERT = "INSERT INTO " + PlantEntry.TABLE_NAME + " (" +
+            PlantEntry.COLUMN_PLANT_TYPE + ", " + PlantEntry.COLUMN_CREATION_TIME + ", " +
+            PlantEntry.COLUMN_LAST_WATERED_TIME + ") VALUES (?, ?, ?)";
+    private static final String SQL_PAGE = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " WHERE " + PlantSql.PAGE_SELECTION +
+            " ORDER BY " + PlantSql.PAGE_SORT_ORDER +
+            " LIMIT " + PAGE_SIZE;
+    // The plant the single-plant widget shows
+    private static final String SQL_THIRSTIEST = "SELECT * FROM " + PlantEntry.TABLE_NAME +
+            " ORDER BY " + PlantEntry.COLUMN_LAST_WATERED_TIME + " LIMIT 1";
+
+    @Param({"1000", "100000"})
+    public int plantCount;
+
+    private final PlantSpecies mSpecies = PlantSpecies.DEFAULT;
+    private File mDatabaseFile;
+    private Connection mConnection;
+    private PreparedStatement mInsert;
+    private PreparedStatement mWaterPlant;
+    private PreparedStatement mWaterPlants;
+    private PreparedStatement mPage;
+    private PreparedStatement mThirstiest;
+    private Random mRandom;
+    private long mNow;
+    private long mNextId;
+
+    /**
+     * Creates a fresh garden for each iteration, so inserts don't grow it without bound
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException, SQLException {
+        mDatabaseFile = File.createTempFile("plants", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mDatabaseFile.getAbsolutePath());
+        createSchema(mConnection);
+
+        mInsert = mConnection.prepareStatement(SQL_INSERT);
+        mWaterPlant = mConnection.prepareStatement(PlantSql.waterPlant(mSpecies));
+        mWaterPlants = mConnection.prepareStatement(PlantSql.waterPlants(mSpecies));
+        mPage = mConnection.prepareStatement(SQL_PAGE);
+        mThirstiest = mConnection.prepareStatement(SQL_THIRSTIEST);
+
+        mRandom = new Random(42);
+        mNow = 0;
+        mNextId = 1;
+        insertPlants(plantCount);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        mConnection.close();
+        if (!mDatabaseFile.delete()) mDatabaseFile.deleteOnExit();
+    }
+
+    /**
+     * Creates the current schema the way PlantDbHelper does: the version 1 table, then every
+     * migration up to the latest version
+     */
+    static void createSchema(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(PlantSql.CREATE_PLANTS_TABLE);
+            for (int version = 1; version < PlantSql.SCHEMA_VERSION; version++) {
+                for (String sql : PlantSql.getMigration(version)) {
+                    statement.execute(sql);
+                }
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Inserts the plants in a single transaction, like PlantContentProvider.bulkInsert
+     */
+    private void insertPlants(int count) throws SQLException {
+        mConnection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < count; i++) {
+                insertPlant();
+            }
+            mConnection.commit();
+        } catch (SQLException e) {
+            mConnection.rollback();
+            throw e;
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+    }
+
+    private void insertPlant() throws SQLException {
+        mInsert.setInt(1, mRandom.nextInt(BenchmarkEnvironment.PLANT_TYPE_COUNT));
+        mInsert.setLong(2, mNow);
+        mInsert.setLong(3, mNow);
+        mInsert.executeUpdate();
+        mNextId++;
+    }
+
+    /**
+     * Inserts a batch of plants in one transaction, like PlantContentProvider.bulkInsert.
+     * Scored in rows per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH_SIZE)
+    public void bulkInsert() throws SQLException {
+        insertPlants(INSERT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserts the same batch one row at a time, each row in its own implicit transaction, like
+     * PlantContentProvider.insert. Scored in rows per second, the baseline for bulkInsert.
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH_SIZE)
+    public void insertPerRow() throws SQLException {
+        for (int i = 0; i < INSERT_BATCH_SIZE; i++) {
+            insertPlant();
+        }
+    }
+
+    /**
+     * Waters one random plant, like the detail screen and the widget button
+     */
+    @Benchmark
+    public int waterPlant() throws SQLException {
+        mNow += 1;
+        mWaterPlant.setLong(1, mNow);
+        mWaterPlant.setLong(2, 1 + mRandom.nextInt((int) (mNextId - 1)));
+        return mWaterPlant.executeUpdate();
+    }
+
+    /**
+     * Waters the whole garden. The clock moves past the minimum time between waterings first,
+     * so every living plant is updated each time.
+     */
+    @Benchmark
+    public int waterGarden() throws SQLException {
+        mNow += 2 * HOUR_MILLISECONDS + 1;
+        mWaterPlants.setLong(1, mNow);
+        return mWaterPlants.executeUpdate();
+    }
+
+    /**
+     * Reads a keyset page starting at a random plant, like the garden screen scrolling
+     */
+    @Benchmark
+    public void queryPage(Blackhole blackhole) throws SQLException {
+        long afterId = 1 + mRandom.nextInt((int) (mNextId - 1));
+        // Every plant of the initial garden shares the same creation time
+        mPage.setLong(1, 0);
+        mPage.setLong(2, 0);
+        mPage.setLong(3, afterId);
+        readAll(mPage.executeQuery(), blackhole);
+    }
+
+    @Benchmark
+    public void queryThirstiestPlant(Blackhole blackhole) throws SQLException {
+        readAll(mThirstiest.executeQuery(), blackhole);
+    }
+
+    private static void readAll(ResultSet resultSet, Blackhole blackhole) throws SQLException {
+        try {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+                blackhole.consume(resultSet.getInt(2));
+                blackhole.consume(resultSet.getLong(3));
+                blackhole.consume(resultSet.getLong(4));
+            }
+        } finally {
+            resultSet.close();
+        }
+    }
+}
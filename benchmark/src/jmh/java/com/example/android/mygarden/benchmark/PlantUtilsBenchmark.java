@@ -0,0 +1,100 @@
+package com.example.android.mygarden.benchmark;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+
+import com.example.android.mygarden.utils.PlantUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image and age display lookups, called for every plant on every list bind and widget refresh.
+ * Each invocation runs over a fixed set of ages covering every status, size and display unit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PlantUtilsBenchmark {
+
+    private static final int SAMPLE_COUNT = 1024;
+    private static final long MAX_SAMPLE_AGE = PlantUtils.FULLY_GROWN_AGE * 2;
+
+    private Context mContext;
+    private int[] mTypes;
+    private long[] mPlantAges;
+    private long[] mWaterAges;
+    private int[] mStatuses;
+    private int[] mSizes;
+
+    @Setup
+    public void setUp() {
+        mContext = BenchmarkEnvironment.setUp();
+
+        Random random = new Random(42);
+        mTypes = new int[SAMPLE_COUNT];
+        mPlantAges = new long[SAMPLE_COUNT];
+        mWaterAges = new long[SAMPLE_COUNT];
+        mStatuses = new int[SAMPLE_COUNT];
+        mSizes = new int[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            mTypes[i] = random.nextInt(BenchmarkEnvironment.PLANT_TYPE_COUNT);
+            mPlantAges[i] = (long) (random.nextDouble() * MAX_SAMPLE_AGE);
+            mWaterAges[i] = (long) (random.nextDouble() * PlantUtils.MAX_AGE_WITHOUT_WATER * 2);
+            mStatuses[i] = random.nextInt(PlantUtils.PlantStatus.values().length);
+            mSizes[i] = random.nextInt(PlantUtils.PlantSize.values().length);
+        }
+    }
+
+    @Benchmark
+    public void getPlantImageRes(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            blackhole.consume(PlantUtils.getPlantImageRes(mContext, mPlantAges[i], mWaterAges[i], mTypes[i]));
+        }
+    }
+
+    @Benchmark
+    public void getPlantImgRes(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            blackhole.consume(PlantUtils.getPlantImgRes(mContext, mTypes[i], mStatuses[i], mSizes[i]));
+        }
+    }
+
+    @Benchmark
+    public void getDisplayAgeInt(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            blackhole.consume(PlantUtils.getDisplayAgeInt(mPlantAges[i]));
+        }
+    }
+
+    @Benchmark
+    public void getDisplayAgeUnit(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            blackhole.consume(PlantUtils.getDisplayAgeUnit(mContext, mPlantAges[i]));
+        }
+    }
+}
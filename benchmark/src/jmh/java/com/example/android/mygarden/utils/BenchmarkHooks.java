@@ -0,0 +1,41 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * Gives the benchmarks access to the package-private setters of the lookup tables that the app
+ * otherwise loads from its resources
+ */
+public final class BenchmarkHooks {
+
+    private BenchmarkHooks() {
+    }
+
+    /**
+     * @see PlantUtils#setResourceTables(int[][][], int[])
+     */
+    public static void setResourceTables(int[][][] plantImageRes, int[] plantTypeNameRes) {
+        PlantUtils.setResourceTables(plantImageRes, plantTypeNameRes);
+    }
+
+    /**
+     * @see PlantSpecies#setCatalogue(PlantSpecies)
+     */
+    public static void setSpeciesCatalogue(PlantSpecies catalogue) {
+        PlantSpecies.setCatalogue(catalogue);
+    }
+}